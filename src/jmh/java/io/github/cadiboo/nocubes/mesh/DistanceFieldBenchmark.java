@@ -0,0 +1,53 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.util.ModUtil;
+import net.minecraft.core.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+
+/**
+ * Compares the scalar and vectorised (see {@link SDFMesher#VECTORISED}) distance field generation.
+ * Run with './gradlew jmh -Pjmh.includes=DistanceField'.
+ */
+@State(Scope.Thread)
+public class DistanceFieldBenchmark {
+
+	@Param({"false", "true"})
+	public boolean vectorised;
+
+	/**
+	 * 18 is the size of a render chunk's area, 66 is the size of a column of 4 of them.
+	 */
+	@Param({"18", "66"})
+	public int areaSize;
+
+	private BlockPos size;
+	private float[] densities;
+	private float[] field;
+
+	@Setup
+	public void setup() {
+		if (vectorised && !SDFMesher.VECTORISED)
+			throw new IllegalStateException("The Vector API isn't available, run with '--add-modules=jdk.incubator.vector'");
+		size = new BlockPos(areaSize, areaSize, areaSize);
+		densities = new float[ModUtil.length(size)];
+		field = new float[densities.length];
+		// Mostly full blocks and air with some snow layers, like terrain
+		var random = new Random(0);
+		for (int i = 0; i < densities.length; ++i)
+			densities[i] = random.nextInt(8) == 0 ? -1 + random.nextInt(8) * 0.25F : random.nextBoolean() ? 1 : -1;
+	}
+
+	@Benchmark
+	public float[] averageCorners() {
+		return SDFMesher.averageCorners(densities, size, field, vectorised);
+	}
+
+	@Benchmark
+	public float[] negate() {
+		System.arraycopy(densities, 0, field, 0, densities.length);
+		return SDFMesher.negate(field, field.length, vectorised);
+	}
+
+}
@@ -0,0 +1,178 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.config.NoCubesConfig;
+import io.github.cadiboo.nocubes.config.NoCubesConfig.Server.MesherType;
+import io.github.cadiboo.nocubes.mesh.TestData.TestMesh;
+import io.github.cadiboo.nocubes.util.Area;
+import io.github.cadiboo.nocubes.util.ModUtil;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.annotation.Nullable;
+import java.util.function.Predicate;
+
+/**
+ * Measures how fast each {@link MesherType} turns a fixed {@link Area} into geometry and collisions.
+ * Run with './gradlew jmh', see the 'benchmark' region of 'build.gradle' for options.
+ * <p>
+ * Reports ops/s (areas meshed per second), the allocation rate (from the 'gc' profiler)
+ * and faces/s or shapes/s (from {@link Counters}).
+ * <p>
+ * This runs outside of Forge, so only vanilla's {@link Bootstrap} has been run: the vanilla blocks and their states are
+ * registered but none of our Mixins are applied and the config is never loaded.
+ * Because of that the benchmark:
+ * <ul>
+ *     <li>Uses its own smoothable predicate instead of {@link io.github.cadiboo.nocubes.smoothable.DensityTable#IS_SMOOTHABLE},
+ *     which would need the fields that our Mixins add to BlockState</li>
+ *     <li>Gives the {@link Area} its blocks directly, so the densities that our Mixins keep in each chunk section
+ *     (see {@link Area#getDensities}) aren't measured</li>
+ *     <li>Sets the config values that the meshers read to their defaults itself</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+public class MesherBenchmark {
+
+	/**
+	 * The shapes that are meshed.
+	 */
+	public enum Input {
+		SPHERE(TestData.SPHERE),
+		TORUS(TestData.TORUS),
+		SINE_WAVES(TestData.SINE_WAVES),
+		PERLIN_NOISE(TestData.PERLIN_NOISE),
+		TERRAIN(TestData.TERRAIN),
+		/** Worst case, every block is surrounded by blocks with the opposite smoothness (like in NoCubesTests#mesherSanityCheck) */
+		CHECKERBOARD(null),
+		;
+
+		@Nullable
+		final TestMesh testMesh;
+
+		Input(TestMesh testMesh) {
+			this.testMesh = testMesh;
+		}
+	}
+
+	/**
+	 * Counts the output of each mesher, JMH reports these as faces/s and shapes/s.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public long faces;
+		public long shapes;
+	}
+
+	@Param
+	public MesherType mesher;
+
+	@Param
+	public Input input;
+
+	/**
+	 * 16 is the size of a render chunk (an 18x18x18 area for most meshers).
+	 * 20 is roughly the size of the 'debugRenderMeshCollisions' overlay.
+	 */
+	@Param({"16", "20"})
+	public int meshSize;
+
+	private Mesher instance;
+	private Area area;
+	private Predicate<BlockState> isSmoothable;
+
+	@Setup
+	public void setup() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+
+		var stone = Blocks.STONE.defaultBlockState();
+		var air = Blocks.AIR.defaultBlockState();
+		// Doesn't go through the SmoothableHandler so that the benchmark doesn't depend on the config or on our Mixins
+		isSmoothable = state -> state == stone;
+		// The config is never loaded, use the default value from NoCubesConfig.Server.Impl
+		NoCubesConfig.Server.oldNoCubesRoughness = 0.5F;
+		instance = mesher.instance;
+
+		var negativeExtension = instance.getNegativeAreaExtension();
+		var positiveExtension = instance.getPositiveAreaExtension();
+		var size = new BlockPos(meshSize, meshSize, meshSize).offset(negativeExtension).offset(positiveExtension);
+		var blocks = new BlockState[ModUtil.length(size)];
+		fill(blocks, size, input, stone, air);
+		area = new Area(null, new BlockPos(100, 50, 25), size) {
+			@Override
+			public BlockState[] getAndCacheBlocks() {
+				return blocks;
+			}
+		};
+	}
+
+	/**
+	 * Samples the test mesh (scaled to fit the area) at the centre of each block.
+	 */
+	private static void fill(BlockState[] blocks, BlockPos size, Input input, BlockState inside, BlockState outside) {
+		var testMesh = input.testMesh;
+		var sizeX = size.getX();
+		var sizeY = size.getY();
+		var sizeZ = size.getZ();
+		if (testMesh == null) {
+			int index = 0;
+			for (int z = 0; z < sizeZ; ++z)
+				for (int y = 0; y < sizeY; ++y)
+					for (int x = 0; x < sizeX; ++x, ++index)
+						blocks[index] = ((x + y + z) & 1) == 0 ? inside : outside;
+			return;
+		}
+		var dims = testMesh.dimensions;
+		var field = testMesh.generateDistanceField(0, 0, 0);
+		int index = 0;
+		for (int z = 0; z < sizeZ; ++z) {
+			for (int y = 0; y < sizeY; ++y) {
+				for (int x = 0; x < sizeX; ++x, ++index) {
+					int fieldX = scale(x, sizeX, dims.getX());
+					int fieldY = scale(y, sizeY, dims.getY());
+					int fieldZ = scale(z, sizeZ, dims.getZ());
+					var distance = field[ModUtil.get3dIndexInto1dArray(fieldX, fieldY, fieldZ, dims.getX(), dims.getY())];
+					blocks[index] = distance < 0 ? inside : outside;
+				}
+			}
+		}
+	}
+
+	private static int scale(int value, int from, int to) {
+		return (int) ((value + 0.5F) / from * to);
+	}
+
+	@Benchmark
+	public void generateGeometry(Counters counters, Blackhole blackhole) {
+		instance.generateGeometry(area, isSmoothable, (pos, face) -> {
+			blackhole.consume(face.v0.x + face.v1.y + face.v2.z + face.v3.x);
+			++counters.faces;
+			return true;
+		});
+	}
+
+	@Benchmark
+	public void generateGeometryBatched(Counters counters, Blackhole blackhole) {
+		instance.generateGeometryBatched(area, isSmoothable, (vertices, positions, count) -> {
+			for (int pointer = 0, end = count * 12; pointer < end; pointer += 12)
+				blackhole.consume(vertices[pointer] + vertices[pointer + 4] + vertices[pointer + 8] + vertices[pointer + 9]);
+			counters.faces += count;
+			return true;
+		});
+	}
+
+	@Benchmark
+	public void generateCollisions(Counters counters, Blackhole blackhole) {
+		instance.generateCollisions(area, isSmoothable, (x0, y0, z0, x1, y1, z1) -> {
+			blackhole.consume(x0 + y0 + z0 + x1 + y1 + z1);
+			++counters.shapes;
+			return true;
+		});
+	}
+
+}
@@ -1,6 +1,7 @@
 package io.github.cadiboo.nocubes.client;
 
 import io.github.cadiboo.nocubes.NoCubes;
+import io.github.cadiboo.nocubes.client.render.MeshRenderer;
 import io.github.cadiboo.nocubes.config.NoCubesConfig;
 import io.github.cadiboo.nocubes.hooks.SelfCheck;
 import io.github.cadiboo.nocubes.network.NoCubesNetwork;
@@ -10,6 +11,7 @@ import net.minecraft.client.gui.screens.Screen;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.network.NetworkHooks;
@@ -50,6 +52,14 @@ public final class ClientEventSubscriber {
 		disableCollisionsIfServerDoesNotHaveNoCubes(event);
 	}
 
+	@SubscribeEvent
+	public static void onLevelUnload(LevelEvent.Unload event) {
+		if (!event.getLevel().isClientSide())
+			return;
+		LOG.debug("Client level unloaded, clearing cached meshes");
+		MeshRenderer.clearMeshCache();
+	}
+
 	/**
 	 * This lets players not phase through the ground on servers that don't have NoCubes installed
 	 */
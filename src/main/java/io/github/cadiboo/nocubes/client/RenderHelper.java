@@ -6,6 +6,7 @@ import com.mojang.math.Matrix3f;
 import com.mojang.math.Matrix4f;
 import com.mojang.math.Vector3f;
 import com.mojang.math.Vector4f;
+import io.github.cadiboo.nocubes.client.render.MeshRenderer;
 import io.github.cadiboo.nocubes.config.ColorParser;
 import io.github.cadiboo.nocubes.util.Face;
 import io.github.cadiboo.nocubes.util.Vec;
@@ -26,6 +27,8 @@ public class RenderHelper {
 
 	public static void reloadAllChunks(String because, Object... becauseArgs) {
 		LOG.debug(() -> "Re-rendering chunks because " + because.formatted(becauseArgs));
+		// Whatever changed (the mesher, the smoothables, the config) might not be part of what the cached meshes are checked against
+		MeshRenderer.clearMeshCache();
 		var minecraft = Minecraft.getInstance();
 		minecraft.execute(minecraft.levelRenderer::allChanged);
 	}
@@ -76,6 +79,33 @@ public class RenderHelper {
 		line(buffer, matrix, color, v3x, v3y, v3z, v0x, v0y, v0z);
 	}
 
+	/**
+	 * Draws the outlines of packed faces, like those from {@link io.github.cadiboo.nocubes.mesh.Mesher.FaceBatchAction}.
+	 */
+	public static void drawFacesPosColor(float[] vertices, int count, Vec3 camera, BlockPos pos, ColorParser.Color color, VertexConsumer buffer, PoseStack matrix) {
+		var x = (float) (pos.getX() - camera.x);
+		var y = (float) (pos.getY() - camera.y);
+		var z = (float) (pos.getZ() - camera.z);
+		for (int pointer = 0, end = count * 12; pointer < end; pointer += 12) {
+			var v0x = x + vertices[pointer];
+			var v0y = y + vertices[pointer + 1];
+			var v0z = z + vertices[pointer + 2];
+			var v1x = x + vertices[pointer + 3];
+			var v1y = y + vertices[pointer + 4];
+			var v1z = z + vertices[pointer + 5];
+			var v2x = x + vertices[pointer + 6];
+			var v2y = y + vertices[pointer + 7];
+			var v2z = z + vertices[pointer + 8];
+			var v3x = x + vertices[pointer + 9];
+			var v3y = y + vertices[pointer + 10];
+			var v3z = z + vertices[pointer + 11];
+			line(buffer, matrix, color, v0x, v0y, v0z, v1x, v1y, v1z);
+			line(buffer, matrix, color, v1x, v1y, v1z, v2x, v2y, v2z);
+			line(buffer, matrix, color, v2x, v2y, v2z, v3x, v3y, v3z);
+			line(buffer, matrix, color, v3x, v3y, v3z, v0x, v0y, v0z);
+		}
+	}
+
 	public static void drawShape(PoseStack stack, VertexConsumer buffer, VoxelShape shape, BlockPos pos, Vec3 camera, ColorParser.Color color) {
 		var x = pos.getX() - camera.x;
 		var y = pos.getY() - camera.y;
@@ -2,6 +2,7 @@ package io.github.cadiboo.nocubes.client.render;
 
 import io.github.cadiboo.nocubes.client.render.MeshRenderer.FaceInfo;
 import io.github.cadiboo.nocubes.client.render.struct.FaceLight;
+import io.github.cadiboo.nocubes.mesh.IndexedMesh;
 import io.github.cadiboo.nocubes.util.Face;
 import io.github.cadiboo.nocubes.util.ModUtil;
 import io.github.cadiboo.nocubes.util.ThreadLocalArrayCache;
@@ -10,6 +11,7 @@ import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
 import net.minecraft.util.Mth;
 import net.minecraft.world.level.block.state.BlockState;
 
@@ -69,6 +71,30 @@ public final class LightCache implements AutoCloseable {
 		return faceLight;
 	}
 
+	/**
+	 * Gets the light for every vertex in the mesh, each vertex is only looked up once no matter how many faces share it.
+	 *
+	 * @param vertexNormals The normals from {@link IndexedMesh#computeVertexNormals}
+	 * @param toUse         An array of at least {@code mesh.vertexCount} ints
+	 */
+	public int[] get(BlockPos relativeTo, IndexedMesh mesh, float[] vertexNormals, int[] toUse) {
+		var vertex = new Vec();
+		var normal = new Vec();
+		for (int i = 0, pointer = 0, vertexCount = mesh.vertexCount; i < vertexCount; ++i, pointer += 3) {
+			mesh.getVertex(i, vertex);
+			normal.set(vertexNormals[pointer], vertexNormals[pointer + 1], vertexNormals[pointer + 2]);
+			toUse[i] = get(relativeTo, vertex, normal);
+		}
+		return toUse;
+	}
+
+	/**
+	 * Gets the light of the block on one side of a block, which is what a flat face on that side is lit by.
+	 */
+	public int getNeighbour(BlockPos relativeTo, BlockPos relativePos, Direction direction) {
+		return get(POS.get().set(relativeTo).move(relativePos).move(direction));
+	}
+
 	public int get(BlockPos relativeTo, Vec vec, Vec faceNormal) {
 		BlockPos.MutableBlockPos lightWorldPos = lightWorldPos(relativeTo, vec, faceNormal);
 		int light = get(lightWorldPos);
@@ -0,0 +1,125 @@
+package io.github.cadiboo.nocubes.client.render;
+
+import io.github.cadiboo.nocubes.mesh.Mesher;
+import io.github.cadiboo.nocubes.util.Area;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.Block;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+
+/**
+ * Remembers the geometry of recently rendered chunk sections, so that rebuilding a section whose blocks haven't changed
+ * (e.g. because a torch nearby changed the light) doesn't need to mesh it again.
+ * Entries are keyed by the position of the section and checked against everything the geometry depends on
+ * (the mesher and the state and density of every block in the area, see {@link #getBlockKeys}).
+ * Lighting, colours and textures are not cached, they are recomputed from the cached geometry each time.
+ * If only a few blocks have changed, the old geometry is patched instead of being regenerated (see {@link #findChangedBox}).
+ * The least recently used entries are evicted when the cache grows bigger than its budget.
+ * The cache is cleared whenever all chunks are re-rendered (e.g. when the config or the mesher changes) and when the
+ * level is unloaded, so it never holds on to geometry that can't be used again.
+ */
+final class MeshCache {
+
+	private static final LinkedHashMap<Key, Entry> ENTRIES = new LinkedHashMap<>(256, 0.75F, true);
+	private static long budgetBytes = 32 * 1024 * 1024;
+	private static long sizeBytes;
+
+	/**
+	 * @param pass Which of the passes from {@link MeshRenderer#runForSolidAndSeeThrough} the geometry is for
+	 */
+	record Key(long sectionPos, int pass) {
+	}
+
+	/**
+	 * The geometry of a section and the state that each face was found to be for (stored off-heap, see {@link PackedMesh}).
+	 * Never modified after being created, so can be read by multiple threads.
+	 */
+	record Entry(Mesher mesher, PackedMesh mesh) {
+		long sizeBytes() {
+			return 64L + mesh.sizeBytes();
+		}
+	}
+
+	static Key key(BlockPos sectionPos, int pass) {
+		return new Key(sectionPos.asLong(), pass);
+	}
+
+	/**
+	 * Unlike a hash, the key of a block is different whenever its state or density is, so comparing keys can't miss a
+	 * change.
+	 *
+	 * @param densities The densities of the blocks in the area (from {@link Area#getDensities})
+	 * @param blockKeys Filled with the id of the state of each block and the bits of its density
+	 */
+	static void getBlockKeys(Area area, float[] densities, long[] blockKeys) {
+		var blocks = area.getAndCacheBlocks();
+		for (int i = 0, length = area.numBlocks(); i < length; ++i)
+			blockKeys[i] = (long) Block.getId(blocks[i]) << 32 | Integer.toUnsignedLong(Float.floatToRawIntBits(densities[i]));
+	}
+
+	/**
+	 * @return The smallest box (min x, y, z then max x, y, z, all inclusive) that contains every block whose key is
+	 * different, or null if none are
+	 */
+	static @Nullable int[] findChangedBox(PackedMesh old, long[] newBlockKeys, BlockPos size) {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+		int maxX = -1, maxY = -1, maxZ = -1;
+		int index = 0;
+		for (int z = 0; z < size.getZ(); ++z) {
+			for (int y = 0; y < size.getY(); ++y) {
+				for (int x = 0; x < size.getX(); ++x, ++index) {
+					if (old.getBlockKey(index) == newBlockKeys[index])
+						continue;
+					minX = Math.min(minX, x);
+					minY = Math.min(minY, y);
+					minZ = Math.min(minZ, z);
+					maxX = Math.max(maxX, x);
+					maxY = Math.max(maxY, y);
+					maxZ = Math.max(maxZ, z);
+				}
+			}
+		}
+		return maxX == -1 ? null : new int[]{minX, minY, minZ, maxX, maxY, maxZ};
+	}
+
+	/**
+	 * @return The cached geometry (which may be for an older version of the section) or null if there is none
+	 */
+	static synchronized @Nullable Entry get(Key key) {
+		return budgetBytes <= 0 ? null : ENTRIES.get(key);
+	}
+
+	static synchronized boolean isEnabled() {
+		return budgetBytes > 0;
+	}
+
+	static synchronized void put(Key key, Entry entry) {
+		if (budgetBytes <= 0)
+			return;
+		var old = ENTRIES.put(key, entry);
+		if (old != null)
+			sizeBytes -= old.sizeBytes();
+		sizeBytes += entry.sizeBytes();
+		evictUntilWithinBudget();
+	}
+
+	static synchronized void setBudget(long bytes) {
+		budgetBytes = bytes;
+		evictUntilWithinBudget();
+	}
+
+	static synchronized void clear() {
+		ENTRIES.clear();
+		sizeBytes = 0;
+	}
+
+	private static void evictUntilWithinBudget() {
+		var iterator = ENTRIES.values().iterator();
+		while (sizeBytes > budgetBytes && iterator.hasNext()) {
+			sizeBytes -= iterator.next().sizeBytes();
+			iterator.remove();
+		}
+	}
+
+}
@@ -7,14 +7,20 @@ import io.github.cadiboo.nocubes.client.render.struct.Color;
 import io.github.cadiboo.nocubes.client.render.struct.FaceLight;
 import io.github.cadiboo.nocubes.client.render.struct.Texture;
 import io.github.cadiboo.nocubes.config.NoCubesConfig;
+import io.github.cadiboo.nocubes.mesh.IndexedMesh;
+import io.github.cadiboo.nocubes.mesh.MeshPatcher;
 import io.github.cadiboo.nocubes.mesh.Mesher;
 import io.github.cadiboo.nocubes.mesh.OldNoCubes;
+import io.github.cadiboo.nocubes.mesh.SDFMesher;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.Face;
 import io.github.cadiboo.nocubes.util.ModUtil;
+import io.github.cadiboo.nocubes.util.ThreadLocalArrayCache;
 import io.github.cadiboo.nocubes.util.Vec;
+import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
 import net.minecraft.world.level.EmptyBlockGetter;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.DirtPathBlock;
@@ -22,6 +28,9 @@ import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.material.Material;
 
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -31,6 +40,19 @@ import static net.minecraft.world.level.block.GrassBlock.SNOWY;
 
 public final class MeshRenderer {
 
+	private static final ThreadLocal<IndexedMesh> INDEXED_MESH = ThreadLocal.withInitial(IndexedMesh::new);
+	private static final ThreadLocalArrayCache<float[]> DENSITIES_CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<long[]> BLOCK_KEYS_CACHE = new ThreadLocalArrayCache<>(long[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<float[]> VERTEX_NORMALS_CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<int[]> VERTEX_LIGHTS_CACHE = new ThreadLocalArrayCache<>(int[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<BlockState[]> FOUND_STATES_CACHE = new ThreadLocalArrayCache<>(BlockState[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<int[]> FOUND_POSITIONS_CACHE = new ThreadLocalArrayCache<>(int[]::new, array -> array.length);
+	/**
+	 * How many sections are meshed together when {@link NoCubesConfig.Client#columnMeshing} is enabled.
+	 */
+	private static final int COLUMN_SECTIONS = 4;
+	private static final Set<MeshCache.Key> COLUMNS_BEING_MESHED = ConcurrentHashMap.newKeySet();
+
 	public static boolean isSolidRender(BlockState state) {
 		return state.isSolidRender(EmptyBlockGetter.INSTANCE, BlockPos.ZERO) || state.getBlock() instanceof DirtPathBlock;
 	}
@@ -40,12 +62,31 @@ public final class MeshRenderer {
 		action.accept(state -> isSmoothable.test(state) && !isSolidRender(state));
 	}
 
+	/**
+	 * Called when the client config is loaded, see {@link MeshCache}.
+	 */
+	public static void setMeshCacheBudget(long bytes) {
+		MeshCache.setBudget(bytes);
+	}
+
+	/**
+	 * Called when all chunks are re-rendered and when the level is unloaded, see {@link MeshCache}.
+	 */
+	public static void clearMeshCache() {
+		MeshCache.clear();
+	}
+
 	public static void renderArea(ChunkRenderInfo renderer, Predicate<BlockState> isSmoothableIn, Mesher mesher, Area area) {
 		var faceInfo = new FaceInfo();
 		var objects = new MutableObjects();
 		Mesher.translateToMeshStart(renderer.matrix.matrix(), area.start, renderer.chunkPos);
+		var pass = new int[1];
 		runForSolidAndSeeThrough(isSmoothableIn, isSmoothable -> {
-			mesher.generateGeometry(area, isSmoothable, (ignored, face) -> {
+			if (mesher instanceof SDFMesher sdfMesher) {
+				renderIndexed(renderer, objects, faceInfo, area, sdfMesher, isSmoothable, pass[0]++);
+				return;
+			}
+			Mesher.FaceAction action = (ignored, face) -> {
 				faceInfo.setup(face);
 				RenderableState foundState;
 				if (mesher instanceof OldNoCubes) {
@@ -54,18 +95,216 @@ public final class MeshRenderer {
 					foundState.pos.set(ignored);
 				} else
 					foundState = RenderableState.findAt(objects, area, faceInfo.normal, faceInfo.centre, isSmoothable);
-				var renderState = RenderableState.findRenderFor(objects, foundState, area, faceInfo.approximateDirection);
+				var light = renderer.light.get(area.start, faceInfo.face, faceInfo.normal, objects.light);
+				renderFace(renderer, objects, area, faceInfo, foundState, light);
+				return true;
+			};
+			if (NoCubesConfig.Client.greedyCubicMeshing) {
+				// Merged faces are split back up so that each block keeps its own texture (which can't be repeated across a
+				// bigger face), colour and smooth lighting, faces that are lit differently aren't merged in the first place
+				var blockPos = new BlockPos.MutableBlockPos();
+				var blockFace = new Face();
+				mesher.generateGeometryMerged(
+					area, isSmoothable,
+					(state, relativePos, direction) -> renderer.light.getNeighbour(area.start, relativePos, direction),
+					(relativePos, face) -> Mesher.forEachBlockFace(relativePos, face, blockPos, blockFace, action)
+				);
+			} else
+				mesher.generateGeometry(area, isSmoothable, action);
+		});
+	}
 
-				if (renderState.state.getRenderShape() == RenderShape.INVISIBLE)
-					return true; // How?
+	/**
+	 * Generates the whole mesh up-front so that lighting can be computed once per vertex instead of once per face corner.
+	 * The mesh is cached (see {@link MeshCache}) and reused if the section is rebuilt without its blocks changing.
+	 */
+	static void renderIndexed(ChunkRenderInfo renderer, MutableObjects objects, FaceInfo faceInfo, Area area, SDFMesher mesher, Predicate<BlockState> isSmoothable, int pass) {
+		var key = MeshCache.key(renderer.chunkPos, pass);
+		long[] blockKeys = null;
+		MeshCache.Entry old = null;
+		IndexedMesh mesh = null;
+		// The box that contains all the blocks that changed since the old mesh was generated
+		int[] changed = null;
+		// Nothing will be reused if the cache is disabled, so there's no need to work out what the mesh depends on
+		if (MeshCache.isEnabled()) {
+			blockKeys = BLOCK_KEYS_CACHE.takeArray(area.numBlocks());
+			MeshCache.getBlockKeys(area, area.getDensities(isSmoothable, DENSITIES_CACHE.takeArray(area.numBlocks())), blockKeys);
+			old = MeshCache.get(key);
+			if (old == null && NoCubesConfig.Client.columnMeshing)
+				mesh = meshColumn(renderer, objects, faceInfo, area, mesher, isSmoothable, pass);
+			else if (old != null && old.mesher() == mesher && old.mesh().blockCount == area.numBlocks()) {
+				changed = MeshCache.findChangedBox(old.mesh(), blockKeys, area.size);
+				if (changed == null) {
+					renderPacked(renderer, objects, faceInfo, area, old.mesh());
+					return;
+				}
+			}
+		}
 
-				renderFaceWithConnectedTextures(renderer, objects, area, faceInfo, renderState);
+		// The quad in the old mesh that each quad was copied from, -1 if its state needs to be found again
+		int[] sources = null;
+		if (mesh == null) {
+			mesh = INDEXED_MESH.get();
+			mesh.clear();
+			if (changed != null && MeshPatcher.isSmallEnoughToPatch(changed))
+				sources = MeshPatcher.patch(
+					old.mesh().unpackMesh(new IndexedMesh()), area.size, changed,
+					(start, size, into) -> mesher.generateIndexedGeometry(area.copyOfRange(start, size), isSmoothable, into),
+					mesh
+				);
+			else
+				mesher.generateIndexedGeometry(area, isSmoothable, mesh);
+		}
 
-				// Draw grass tufts, plants etc.
-				renderExtras(renderer, objects, area, foundState, renderState, faceInfo);
-				return true;
-			});
-		});
+		// Rendered from the mesh itself rather than from the packed copy, which has lost some precision
+		var vertexNormals = mesh.computeVertexNormals(VERTEX_NORMALS_CACHE.takeArray(mesh.vertexCount * 3));
+		var foundStates = FOUND_STATES_CACHE.takeArray(mesh.quadCount);
+		var foundPositions = FOUND_POSITIONS_CACHE.takeArray(mesh.quadCount * 3);
+		findStates(objects, faceInfo, area, isSmoothable, mesh, sources, old, foundStates, foundPositions);
+		renderMesh(renderer, objects, faceInfo, area, mesh, vertexNormals, foundStates, foundPositions);
+		// Only packed (which allocates off-heap memory) when it's actually going to be stored
+		if (blockKeys != null)
+			MeshCache.put(key, new MeshCache.Entry(mesher, PackedMesh.pack(blockKeys, area.numBlocks(), mesh, vertexNormals, foundStates, foundPositions)));
+	}
+
+	/**
+	 * Renders a mesh from the cache.
+	 */
+	private static void renderPacked(ChunkRenderInfo renderer, MutableObjects objects, FaceInfo faceInfo, Area area, PackedMesh packed) {
+		var mesh = packed.unpackMesh(INDEXED_MESH.get());
+		var vertexNormals = packed.unpackNormals(VERTEX_NORMALS_CACHE.takeArray(mesh.vertexCount * 3));
+		var foundStates = FOUND_STATES_CACHE.takeArray(mesh.quadCount);
+		var foundPositions = FOUND_POSITIONS_CACHE.takeArray(mesh.quadCount * 3);
+		packed.unpackFoundStates(foundStates, foundPositions);
+		renderMesh(renderer, objects, faceInfo, area, mesh, vertexNormals, foundStates, foundPositions);
+	}
+
+	/**
+	 * Lights and renders each face of the mesh.
+	 *
+	 * @param foundStates    The state that each quad was found to be for
+	 * @param foundPositions The packed (x, y, z) position of the state that each quad was found to be for
+	 */
+	private static void renderMesh(ChunkRenderInfo renderer, MutableObjects objects, FaceInfo faceInfo, Area area, IndexedMesh mesh, float[] vertexNormals, BlockState[] foundStates, int[] foundPositions) {
+		var vertexLights = renderer.light.get(area.start, mesh, vertexNormals, VERTEX_LIGHTS_CACHE.takeArray(mesh.vertexCount));
+		var quads = mesh.quads;
+		var light = objects.light;
+		var foundState = objects.foundState;
+		for (int quad = 0, quadCount = mesh.quadCount; quad < quadCount; ++quad) {
+			faceInfo.setup(mesh.getFace(quad, objects.face));
+			int pointer = quad * 4;
+			light.v0 = vertexLights[quads[pointer]];
+			light.v1 = vertexLights[quads[pointer + 1]];
+			light.v2 = vertexLights[quads[pointer + 2]];
+			light.v3 = vertexLights[quads[pointer + 3]];
+			foundState.state = foundStates[quad];
+			foundState.pos.set(foundPositions[quad * 3], foundPositions[quad * 3 + 1], foundPositions[quad * 3 + 2]);
+			renderFace(renderer, objects, area, faceInfo, foundState, light);
+		}
+	}
+
+	/**
+	 * Works out everything about the mesh that doesn't depend on lighting and stores it in a cache entry.
+	 */
+	private static MeshCache.Entry createEntry(MutableObjects objects, FaceInfo faceInfo, Area area, SDFMesher mesher, Predicate<BlockState> isSmoothable, long[] blockKeys, IndexedMesh mesh) {
+		var vertexNormals = mesh.computeVertexNormals(VERTEX_NORMALS_CACHE.takeArray(mesh.vertexCount * 3));
+		var foundStates = FOUND_STATES_CACHE.takeArray(mesh.quadCount);
+		var foundPositions = FOUND_POSITIONS_CACHE.takeArray(mesh.quadCount * 3);
+		findStates(objects, faceInfo, area, isSmoothable, mesh, null, null, foundStates, foundPositions);
+		return new MeshCache.Entry(mesher, PackedMesh.pack(blockKeys, area.numBlocks(), mesh, vertexNormals, foundStates, foundPositions));
+	}
+
+	/**
+	 * Finds the state that each quad of the mesh is for (which its texture, colour and extras come from).
+	 *
+	 * @param sources        The quad in the old mesh that each quad was copied from, -1 if its state needs to be found again
+	 * @param foundStates    Filled with the state that each quad was found to be for
+	 * @param foundPositions Filled with the packed (x, y, z) position of the state that each quad was found to be for
+	 */
+	private static void findStates(MutableObjects objects, FaceInfo faceInfo, Area area, Predicate<BlockState> isSmoothable, IndexedMesh mesh, @Nullable int[] sources, @Nullable MeshCache.Entry old, BlockState[] foundStates, int[] foundPositions) {
+		var foundPos = new BlockPos.MutableBlockPos();
+		for (int quad = 0, quadCount = mesh.quadCount; quad < quadCount; ++quad) {
+			int source = sources == null ? -1 : sources[quad];
+			if (source != -1) {
+				foundStates[quad] = old.mesh().getFoundState(source);
+				old.mesh().getFoundPosition(source, foundPos);
+			} else {
+				faceInfo.setup(mesh.getFace(quad, objects.face));
+				var foundState = RenderableState.findAt(objects, area, faceInfo.normal, faceInfo.centre, isSmoothable);
+				foundStates[quad] = foundState.state;
+				foundPos.set(foundState.relativePos());
+			}
+			foundPositions[quad * 3] = foundPos.getX();
+			foundPositions[quad * 3 + 1] = foundPos.getY();
+			foundPositions[quad * 3 + 2] = foundPos.getZ();
+		}
+	}
+
+	/**
+	 * Meshes the group of {@link #COLUMN_SECTIONS} sections that this one is in all at once and caches the mesh of each.
+	 * Sections are usually rebuilt in vertical bursts (e.g. when a chunk is loaded) and the areas of neighbouring sections
+	 * overlap, so this saves fetching the overlapping blocks and generating their distance field over and over.
+	 * When the rebuilds for the other sections run, they find their meshes in the cache (if their blocks haven't changed).
+	 *
+	 * @return The mesh of this section (which is left for the caller to cache), or null if the column couldn't be meshed
+	 */
+	private static @Nullable IndexedMesh meshColumn(ChunkRenderInfo renderer, MutableObjects objects, FaceInfo faceInfo, Area area, SDFMesher mesher, Predicate<BlockState> isSmoothable, int pass) {
+		var level = Minecraft.getInstance().level;
+		if (level == null)
+			return null;
+		var chunkPos = renderer.chunkPos;
+		int firstSection = Math.max(Math.floorDiv(SectionPos.blockToSectionCoord(chunkPos.getY()), COLUMN_SECTIONS) * COLUMN_SECTIONS, level.getMinSection());
+		int sections = Math.min(firstSection + COLUMN_SECTIONS, level.getMaxSection()) - firstSection;
+		if (sections <= 1)
+			return null;
+		var columnStart = new BlockPos(chunkPos.getX(), SectionPos.sectionToBlockCoord(firstSection), chunkPos.getZ());
+		var columnKey = MeshCache.key(columnStart, pass);
+		// Another section in the column is already meshing it, it's faster to just mesh this one than to wait
+		if (!COLUMNS_BEING_MESHED.add(columnKey))
+			return null;
+		try {
+			// The column's blocks are stored in the same per-thread array as the area's
+			area.detachBlocks();
+			var column = new Area(level, columnStart, new BlockPos(ModUtil.CHUNK_SIZE.getX(), ModUtil.CHUNK_SIZE.getY() * sections, ModUtil.CHUNK_SIZE.getZ()), mesher);
+			var columnMesh = INDEXED_MESH.get();
+			columnMesh.clear();
+			mesher.generateIndexedGeometry(column, isSmoothable, columnMesh);
+			IndexedMesh mesh = null;
+			for (int i = 0; i < sections; ++i) {
+				int offsetY = ModUtil.CHUNK_SIZE.getY() * i;
+				// Every mesher generates faces for the cells from 0 to 16 (inclusive) of a section's area
+				var sectionMesh = new IndexedMesh();
+				MeshPatcher.extractSection(
+					columnMesh, offsetY, ModUtil.CHUNK_SIZE.getY() + 1, area.size,
+					(start, size, into) -> mesher.generateIndexedGeometry(column.copyOfRange(start.above(offsetY), size), isSmoothable, into),
+					sectionMesh
+				);
+				var sectionPos = columnStart.above(offsetY);
+				if (sectionPos.equals(chunkPos)) {
+					mesh = sectionMesh;
+					continue;
+				}
+				var sectionArea = column.copyOfRange(new BlockPos(0, offsetY, 0), area.size);
+				var blockKeys = new long[sectionArea.numBlocks()];
+				MeshCache.getBlockKeys(sectionArea, sectionArea.getDensities(isSmoothable, new float[sectionArea.numBlocks()]), blockKeys);
+				MeshCache.put(MeshCache.key(sectionPos, pass), createEntry(objects, faceInfo, sectionArea, mesher, isSmoothable, blockKeys, sectionMesh));
+			}
+			return mesh;
+		} finally {
+			COLUMNS_BEING_MESHED.remove(columnKey);
+		}
+	}
+
+	static void renderFace(ChunkRenderInfo renderer, MutableObjects objects, Area area, FaceInfo faceInfo, RenderableState foundState, FaceLight light) {
+		var renderState = RenderableState.findRenderFor(objects, foundState, area, faceInfo.approximateDirection);
+
+		if (renderState.state.getRenderShape() == RenderShape.INVISIBLE)
+			return; // How?
+
+		renderFaceWithConnectedTextures(renderer, objects, area, faceInfo, renderState, light);
+
+		// Draw grass tufts, plants etc.
+		renderExtras(renderer, objects, area, foundState, renderState, faceInfo);
 	}
 
 	static void renderBreakingTexture(BlockState state, BlockPos worldPos, PoseStack matrix, VertexConsumer buffer, Mesher mesher, Area area) {
@@ -82,14 +321,13 @@ public final class MeshRenderer {
 		});
 	}
 
-	static void renderFaceWithConnectedTextures(ChunkRenderInfo renderer, MutableObjects objects, Area area, FaceInfo faceInfo, RenderableState renderState) {
+	static void renderFaceWithConnectedTextures(ChunkRenderInfo renderer, MutableObjects objects, Area area, FaceInfo faceInfo, RenderableState renderState, FaceLight light) {
 		var state = renderState.state;
 		var worldPos = objects.pos.set(renderState.relativePos()).move(area.start);
 
 		var material = state.getMaterial();
 		var renderBothSides = material != Material.GLASS && material != Material.PORTAL && material != Material.TOP_SNOW && !MeshRenderer.isSolidRender(state);
 
-		var light = renderer.light.get(area.start, faceInfo.face, faceInfo.normal, objects.light);
 		var shade = renderer.getShade(faceInfo.approximateDirection);
 
 		renderer.forEachQuad(
@@ -211,6 +449,7 @@ public final class MeshRenderer {
 	 */
 	static final class MutableObjects {
 		final FaceLight light = new FaceLight();
+		final Face face = new Face();
 		final RenderableState foundState = new RenderableState();
 		final RenderableState renderState = new RenderableState();
 		final Vec vec = new Vec();
@@ -9,6 +9,7 @@ import io.github.cadiboo.nocubes.client.render.MeshRenderer.MutableObjects;
 import io.github.cadiboo.nocubes.collision.CollisionHandler;
 import io.github.cadiboo.nocubes.config.ColorParser.Color;
 import io.github.cadiboo.nocubes.config.NoCubesConfig;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.ModUtil;
 import io.github.cadiboo.nocubes.util.Vec;
@@ -82,8 +83,8 @@ public final class OverlayRenderers {
 		try (var area = new Area(world, lookingAtPos, ModUtil.VEC_ONE, mesher)) {
 			var color = NoCubesConfig.Client.selectionBoxColor;
 			Predicate<BlockState> isSmoothable = NoCubes.smoothableHandler::isSmoothable;
-			mesher.generateGeometry(area, s -> isSmoothable.test(s) && MeshRenderer.isSolidRender(s) == stateSolidity, (pos, face) -> {
-				drawFacePosColor(face, camera, area.start, color, buffer, matrix);
+			mesher.generateGeometryBatched(area, s -> isSmoothable.test(s) && MeshRenderer.isSolidRender(s) == stateSolidity, (vertices, positions, count) -> {
+				drawFacesPosColor(vertices, count, camera, area.start, color, buffer, matrix);
 				return true;
 			});
 		}
@@ -158,15 +159,12 @@ public final class OverlayRenderers {
 		// at the cost of 1-block formations disappearing
 		if (!NoCubesConfig.Client.debugVisualiseDensitiesGrid)
 			return;
-		Predicate<BlockState> isSmoothable = NoCubes.smoothableHandler::isSmoothable;
+		var isSmoothable = DensityTable.IS_SMOOTHABLE;
 		var distanceIndicator = Shapes.box(0, 0, 0, 1 / 8F, 1 / 8F, 1 / 8F);
 		var densityColor = new Color(0F, 0F, 1F, 0.5F);
 		var viewer = camera.getEntity();
 		try (var area = new Area(viewer.level, getTargetedPosForDebugRendering(viewer).offset(-2, -2, -2), new BlockPos(4, 4, 4), NoCubesConfig.Server.mesher)) {
-			var states = area.getAndCacheBlocks();
-			var densities = new float[area.numBlocks()];
-			for (int i = 0; i < densities.length; ++i)
-				densities[i] = ModUtil.getBlockDensity(isSmoothable, states[i]);
+			var densities = area.getDensities(isSmoothable, new float[area.numBlocks()]);
 
 			int minZ = area.start.getZ();
 			int minY = area.start.getY();
@@ -0,0 +1,239 @@
+package io.github.cadiboo.nocubes.client.render;
+
+import io.github.cadiboo.nocubes.mesh.IndexedMesh;
+import net.minecraft.core.BlockPos.MutableBlockPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.IdentityHashMap;
+
+/**
+ * The geometry of a cached section (see {@link MeshCache}) packed into a direct (off-heap) buffer.
+ * Storing it as arrays and objects on the heap costs roughly 5x as much and gives the garbage collector more to trace,
+ * this way each section is just one buffer (and a small palette of the states its faces were found to be for).
+ * <p>
+ * The buffer contains, in order:
+ * <ul>
+ *     <li>The key of each block in the area (8 bytes each, see {@link MeshCache#getBlockKeys})</li>
+ *     <li>For each vertex: its position as 16-bit fixed point numbers (6 bytes) and its octahedral encoded normal (2 bytes)</li>
+ *     <li>For each quad: the indices of its 4 vertices (8 bytes, or 16 if there are more than 65535 vertices),
+ *     the position of its cell (3 bytes), the position of its found state (3 bytes) and its found state's index in the palette (2 bytes)</li>
+ * </ul>
+ * All positions are relative to the start of the section's area, which is never more than 32 blocks big.
+ * Only absolute reads are used, so a packed mesh can be read by multiple threads at once.
+ */
+final class PackedMesh {
+
+	/**
+	 * Positions are stored as multiples of 1/1024th of a block, the same precision that vertices are welded at when patching.
+	 */
+	private static final float POSITION_SCALE = 1024;
+	private static final int VERTEX_BYTES = 3 * Short.BYTES + 2;
+	private static final int QUAD_EXTRA_BYTES = 3 + 3 + Short.BYTES;
+	/**
+	 * Stands in for normals that are too short to have a direction (see {@link IndexedMesh#computeVertexNormals}).
+	 */
+	private static final short ZERO_NORMAL = (short) 0x8080;
+
+	final int blockCount;
+	final int vertexCount;
+	final int quadCount;
+	private final boolean wideIndices;
+	private final int verticesStart;
+	private final int quadsStart;
+	private final int quadBytes;
+	private final ByteBuffer buffer;
+	private final BlockState[] palette;
+
+	private PackedMesh(int blockCount, int vertexCount, int quadCount, BlockState[] palette) {
+		this.blockCount = blockCount;
+		this.vertexCount = vertexCount;
+		this.quadCount = quadCount;
+		this.wideIndices = vertexCount > 0xFFFF;
+		this.verticesStart = blockCount * Long.BYTES;
+		this.quadsStart = verticesStart + vertexCount * VERTEX_BYTES;
+		this.quadBytes = 4 * (wideIndices ? Integer.BYTES : Short.BYTES) + QUAD_EXTRA_BYTES;
+		this.buffer = ByteBuffer.allocateDirect(quadsStart + quadCount * quadBytes).order(ByteOrder.nativeOrder());
+		this.palette = palette;
+	}
+
+	/**
+	 * @param blockKeys      The key of each block in the area (see {@link MeshCache#getBlockKeys}), only the first blockCount are used
+	 * @param vertexNormals  The packed (x, y, z) normal of each vertex in the mesh
+	 * @param foundStates    The state that each quad was found to be for
+	 * @param foundPositions The packed (x, y, z) position of the state that each quad was found to be for
+	 */
+	static PackedMesh pack(long[] blockKeys, int blockCount, IndexedMesh mesh, float[] vertexNormals, BlockState[] foundStates, int[] foundPositions) {
+		var paletteIndices = new IdentityHashMap<BlockState, Integer>();
+		for (int quad = 0; quad < mesh.quadCount; ++quad)
+			paletteIndices.putIfAbsent(foundStates[quad], paletteIndices.size());
+		var palette = new BlockState[paletteIndices.size()];
+		paletteIndices.forEach((state, index) -> palette[index] = state);
+
+		var packed = new PackedMesh(blockCount, mesh.vertexCount, mesh.quadCount, palette);
+		var buffer = packed.buffer;
+		for (int block = 0; block < blockCount; ++block)
+			buffer.putLong(block * Long.BYTES, blockKeys[block]);
+
+		var vertices = mesh.vertices;
+		for (int vertex = 0, pointer = 0; vertex < mesh.vertexCount; ++vertex, pointer += 3) {
+			int offset = packed.verticesStart + vertex * VERTEX_BYTES;
+			buffer.putShort(offset, packPosition(vertices[pointer]));
+			buffer.putShort(offset + 2, packPosition(vertices[pointer + 1]));
+			buffer.putShort(offset + 4, packPosition(vertices[pointer + 2]));
+			buffer.putShort(offset + 6, packNormal(vertexNormals[pointer], vertexNormals[pointer + 1], vertexNormals[pointer + 2]));
+		}
+
+		var quads = mesh.quads;
+		var quadPositions = mesh.quadPositions;
+		var wideIndices = packed.wideIndices;
+		for (int quad = 0; quad < mesh.quadCount; ++quad) {
+			int offset = packed.quadsStart + quad * packed.quadBytes;
+			for (int corner = 0; corner < 4; ++corner) {
+				int vertex = quads[quad * 4 + corner];
+				if (wideIndices) {
+					buffer.putInt(offset, vertex);
+					offset += Integer.BYTES;
+				} else {
+					buffer.putShort(offset, (short) vertex);
+					offset += Short.BYTES;
+				}
+			}
+			for (int axis = 0; axis < 3; ++axis) {
+				buffer.put(offset + axis, (byte) quadPositions[quad * 3 + axis]);
+				buffer.put(offset + 3 + axis, (byte) foundPositions[quad * 3 + axis]);
+			}
+			buffer.putShort(offset + 6, (short) (int) paletteIndices.get(foundStates[quad]));
+		}
+		return packed;
+	}
+
+	long getBlockKey(int block) {
+		return buffer.getLong(block * Long.BYTES);
+	}
+
+	/**
+	 * @param toUse The mesh to unpack into, it is cleared beforehand
+	 */
+	IndexedMesh unpackMesh(IndexedMesh toUse) {
+		toUse.clear();
+		var buffer = this.buffer;
+		for (int vertex = 0; vertex < vertexCount; ++vertex) {
+			int offset = verticesStart + vertex * VERTEX_BYTES;
+			toUse.addVertex(
+				unpackPosition(buffer.getShort(offset)),
+				unpackPosition(buffer.getShort(offset + 2)),
+				unpackPosition(buffer.getShort(offset + 4))
+			);
+		}
+		var vertices = new int[4];
+		for (int quad = 0; quad < quadCount; ++quad) {
+			int offset = quadsStart + quad * quadBytes;
+			for (int corner = 0; corner < 4; ++corner) {
+				if (wideIndices) {
+					vertices[corner] = buffer.getInt(offset);
+					offset += Integer.BYTES;
+				} else {
+					vertices[corner] = Short.toUnsignedInt(buffer.getShort(offset));
+					offset += Short.BYTES;
+				}
+			}
+			toUse.addQuad(buffer.get(offset), buffer.get(offset + 1), buffer.get(offset + 2), vertices[0], vertices[1], vertices[2], vertices[3]);
+		}
+		return toUse;
+	}
+
+	/**
+	 * @param toUse An array of at least {@code vertexCount * 3} floats
+	 * @return The array, filled with the packed (x, y, z) normals of each vertex
+	 */
+	float[] unpackNormals(float[] toUse) {
+		for (int vertex = 0, pointer = 0; vertex < vertexCount; ++vertex, pointer += 3)
+			unpackNormal(buffer.getShort(verticesStart + vertex * VERTEX_BYTES + 6), toUse, pointer);
+		return toUse;
+	}
+
+	/**
+	 * @param states    An array of at least {@code quadCount} states, filled with the state that each quad was found to be for
+	 * @param positions An array of at least {@code quadCount * 3} ints, filled with the packed (x, y, z) position of each found state
+	 */
+	void unpackFoundStates(BlockState[] states, int[] positions) {
+		for (int quad = 0; quad < quadCount; ++quad) {
+			int offset = foundOffset(quad);
+			states[quad] = palette[Short.toUnsignedInt(buffer.getShort(offset + 3))];
+			positions[quad * 3] = buffer.get(offset);
+			positions[quad * 3 + 1] = buffer.get(offset + 1);
+			positions[quad * 3 + 2] = buffer.get(offset + 2);
+		}
+	}
+
+	BlockState getFoundState(int quad) {
+		return palette[Short.toUnsignedInt(buffer.getShort(foundOffset(quad) + 3))];
+	}
+
+	MutableBlockPos getFoundPosition(int quad, MutableBlockPos toUse) {
+		int offset = foundOffset(quad);
+		return toUse.set(buffer.get(offset), buffer.get(offset + 1), buffer.get(offset + 2));
+	}
+
+	long sizeBytes() {
+		// Roughly, includes the palette and the objects themselves
+		return 128L + buffer.capacity() + 4L * palette.length;
+	}
+
+	private int foundOffset(int quad) {
+		return quadsStart + quad * quadBytes + 4 * (wideIndices ? Integer.BYTES : Short.BYTES) + 3;
+	}
+
+	private static short packPosition(float value) {
+		return (short) Math.round(value * POSITION_SCALE);
+	}
+
+	private static float unpackPosition(short value) {
+		return value / POSITION_SCALE;
+	}
+
+	/**
+	 * Octahedral encoding, projects the normal onto an octahedron and then unfolds the octahedron into a square.
+	 * Each axis of the square is stored in a byte, which is accurate to within about a degree.
+	 */
+	static short packNormal(float x, float y, float z) {
+		float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+		if (length < 0.0001F)
+			return ZERO_NORMAL;
+		float u = x / length;
+		float v = y / length;
+		if (z < 0) {
+			float foldedU = (1 - Math.abs(v)) * signNotZero(u);
+			v = (1 - Math.abs(u)) * signNotZero(v);
+			u = foldedU;
+		}
+		return (short) ((Math.round(u * 127) & 0xFF) | (Math.round(v * 127) & 0xFF) << 8);
+	}
+
+	static void unpackNormal(short packed, float[] toUse, int pointer) {
+		if (packed == ZERO_NORMAL) {
+			toUse[pointer] = toUse[pointer + 1] = toUse[pointer + 2] = 0;
+			return;
+		}
+		float u = (byte) packed / 127F;
+		float v = (byte) (packed >> 8) / 127F;
+		float z = 1 - Math.abs(u) - Math.abs(v);
+		if (z < 0) {
+			float unfoldedU = (1 - Math.abs(v)) * signNotZero(u);
+			v = (1 - Math.abs(u)) * signNotZero(v);
+			u = unfoldedU;
+		}
+		float length = Mth.sqrt(u * u + v * v + z * z);
+		toUse[pointer] = u / length;
+		toUse[pointer + 1] = v / length;
+		toUse[pointer + 2] = z / length;
+	}
+
+	private static float signNotZero(float value) {
+		return value < 0 ? -1 : 1;
+	}
+
+}
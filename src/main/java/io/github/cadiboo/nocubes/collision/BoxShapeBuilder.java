@@ -0,0 +1,88 @@
+package io.github.cadiboo.nocubes.collision;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import net.minecraft.world.phys.shapes.ArrayVoxelShape;
+import net.minecraft.world.phys.shapes.BitSetDiscreteVoxelShape;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+
+import java.util.Arrays;
+
+/**
+ * Collects boxes and turns them into a single {@link VoxelShape} in one go.
+ * Joining each box onto the shape made so far (with {@link Shapes#joinUnoptimized}) rebuilds the whole shape for every
+ * box, which is quadratic in the number of boxes and allocates a lot.
+ * This instead finds every distinct coordinate along each axis once, then fills the cells that each box covers.
+ */
+final class BoxShapeBuilder implements ShapeConsumer {
+
+	private double[] boxes = new double[6 * 16];
+	private int size;
+
+	@Override
+	public boolean accept(double x0, double y0, double z0, double x1, double y1, double z1) {
+		// Same as Shapes.box, flat boxes don't have any volume to collide with
+		if (x1 - x0 < Shapes.EPSILON || y1 - y0 < Shapes.EPSILON || z1 - z0 < Shapes.EPSILON)
+			return true;
+		int pointer = size * 6;
+		if (pointer == boxes.length)
+			boxes = Arrays.copyOf(boxes, boxes.length * 2);
+		var boxes = this.boxes;
+		// Adding 0 turns -0 into 0, which Arrays.sort and Arrays.binarySearch treat as different values
+		boxes[pointer] = x0 + 0.0;
+		boxes[pointer + 1] = y0 + 0.0;
+		boxes[pointer + 2] = z0 + 0.0;
+		boxes[pointer + 3] = x1 + 0.0;
+		boxes[pointer + 4] = y1 + 0.0;
+		boxes[pointer + 5] = z1 + 0.0;
+		++size;
+		return true;
+	}
+
+	/**
+	 * @return The union of all the boxes
+	 */
+	VoxelShape build() {
+		var boxes = this.boxes;
+		if (size == 0)
+			return Shapes.empty();
+		if (size == 1)
+			return Shapes.box(boxes[0], boxes[1], boxes[2], boxes[3], boxes[4], boxes[5]);
+		var xs = getDistinctCoords(0);
+		var ys = getDistinctCoords(1);
+		var zs = getDistinctCoords(2);
+		var cells = new BitSetDiscreteVoxelShape(xs.length - 1, ys.length - 1, zs.length - 1);
+		for (int pointer = 0, end = size * 6; pointer < end; pointer += 6) {
+			int minX = Arrays.binarySearch(xs, boxes[pointer]);
+			int minY = Arrays.binarySearch(ys, boxes[pointer + 1]);
+			int minZ = Arrays.binarySearch(zs, boxes[pointer + 2]);
+			int maxX = Arrays.binarySearch(xs, boxes[pointer + 3]);
+			int maxY = Arrays.binarySearch(ys, boxes[pointer + 4]);
+			int maxZ = Arrays.binarySearch(zs, boxes[pointer + 5]);
+			for (int x = minX; x < maxX; ++x)
+				for (int y = minY; y < maxY; ++y)
+					for (int z = minZ; z < maxZ; ++z)
+						cells.fill(x, y, z);
+		}
+		return new ArrayVoxelShape(cells, DoubleArrayList.wrap(xs), DoubleArrayList.wrap(ys), DoubleArrayList.wrap(zs));
+	}
+
+	/**
+	 * @return The sorted, distinct mins and maxes of the boxes along the axis
+	 */
+	private double[] getDistinctCoords(int axis) {
+		var boxes = this.boxes;
+		var coords = new double[size * 2];
+		for (int i = 0; i < size; ++i) {
+			coords[i * 2] = boxes[i * 6 + axis];
+			coords[i * 2 + 1] = boxes[i * 6 + axis + 3];
+		}
+		Arrays.sort(coords);
+		int distinct = 1;
+		for (int i = 1; i < coords.length; ++i)
+			if (coords[i] != coords[distinct - 1])
+				coords[distinct++] = coords[i];
+		return Arrays.copyOf(coords, distinct);
+	}
+
+}
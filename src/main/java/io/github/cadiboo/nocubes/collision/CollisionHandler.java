@@ -1,8 +1,12 @@
 package io.github.cadiboo.nocubes.collision;
 
+import com.google.common.collect.ImmutableList;
 import io.github.cadiboo.nocubes.NoCubes;
 import io.github.cadiboo.nocubes.config.NoCubesConfig;
+import io.github.cadiboo.nocubes.hooks.INoCubesBlockCollisions;
 import io.github.cadiboo.nocubes.mesh.Mesher;
+import io.github.cadiboo.nocubes.mesh.ParallelMesher;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.Face;
 import io.github.cadiboo.nocubes.util.ModUtil;
@@ -13,23 +17,28 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.core.BlockPos.MutableBlockPos;
 import net.minecraft.core.Direction.Axis;
 import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.FallingBlockEntity;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.BlockCollisions;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.CollisionGetter;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
 import net.minecraft.world.phys.shapes.*;
 
+import javax.annotation.Nullable;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
  * Collisions sanity check:
- * - Entities shouldn't fall through the floor ({@link io.github.cadiboo.nocubes.mixin.BlockStateBaseMixin#nocubes_getCollisionShape})
+ * - Entities shouldn't fall through the floor ({@link io.github.cadiboo.nocubes.mixin.BlockStateBaseMixin#nocubes_getCollisionShape} and {@link #collideBoundingBox})
  * - Player should be able to walk into and out of single block holes ({@link io.github.cadiboo.nocubes.mixin.BlockStateBaseMixin#nocubes_hasLargeCollisionShape})
  * - Player should be able to walk up slopes made out of normally solid blocks like stone/dirt/grass/sand ({@link io.github.cadiboo.nocubes.mixin.BlockStateBaseMixin#nocubes_hasLargeCollisionShape})
  * - Player should be able to swim through smooth blocks underwater without suffocating (e.g. near the shore) ({@link io.github.cadiboo.nocubes.mixin.BlockCollisionsMixin#nocubes_isSuffocating})
@@ -44,6 +53,8 @@ import java.util.function.Predicate;
  */
 public final class CollisionHandler {
 
+	private static volatile ParallelMesher parallelMesher;
+
 	public static VoxelShape getCollisionShape(BlockState state, BlockGetter reader, BlockPos blockPos, CollisionContext context) {
 		boolean canCollide = state.getBlock().hasCollision;
 		try {
@@ -68,35 +79,119 @@ public final class CollisionHandler {
 //			return VoxelShapes.empty();
 
 		var entity = context.getEntity();
-		if (entity instanceof FallingBlockEntity || // Stop sand etc. breaking when it falls
-			(NoCubesConfig.Server.tempMobCollisionsDisabled && !(entity instanceof Player)) ||
+		if (collidesWithVanillaShapes(entity) ||
 			// Stop grass path turning to dirt causing a crash from trying to turn an empty VoxelShape into an AABB
 			(entity == null && reader.getBlockState(blockPos) != state)
 		)
 			return state.getShape(reader, blockPos);
 
 		var mesher = NoCubesConfig.Server.mesher;
-		var ref = new VoxelShape[]{Shapes.empty()};
 		if (reader instanceof Level)
 			((Level) reader).getProfiler().push("NoCubes collisions");
+		try {
+			// Most queries come from a level, their collisions are generated for a whole section at once and cached
+			var cached = reader instanceof LevelReader world ? SectionCollisions.getCollisionShape(world, blockPos, mesher) : null;
+			return cached != null ? cached : generateCollisionShape(reader, blockPos, mesher);
+		} finally {
+			if (reader instanceof Level)
+				((Level) reader).getProfiler().pop();
+		}
+	}
+
+	private static boolean collidesWithVanillaShapes(@Nullable Entity entity) {
+		return entity instanceof FallingBlockEntity || // Stop sand etc. breaking when it falls
+			(NoCubesConfig.Server.tempMobCollisionsDisabled && !(entity instanceof Player));
+	}
+
+	/**
+	 * @return If {@link #collideBoundingBox} should be used to move the entity
+	 */
+	public static boolean shouldSweep(@Nullable Entity entity) {
+		return NoCubesConfig.Server.collisionsEnabled && entity != null && !collidesWithVanillaShapes(entity);
+	}
+
+	/**
+	 * Called instead of {@link Entity#collideBoundingBox} for entities that collide with smooth terrain.
+	 * Vanilla collides the bounding box with the shape of every block around it, which would build a {@link VoxelShape}
+	 * for every smoothable block near every moving entity each tick. Instead, only the blocks that aren't smoothable are
+	 * collided with like vanilla, the bounding box is swept straight through the boxes cached for the sections of the
+	 * smoothable ones (see {@link SectionCollisions#collide}).
+	 * Moves along the axes in the same order as vanilla's 'collideWithShapes' (Y first, then whichever of X and Z has the
+	 * most motion).
+	 */
+	public static Vec3 collideBoundingBox(Entity entity, Vec3 motion, AABB aabb, Level level, List<VoxelShape> entityShapes) {
+		level.getProfiler().push("NoCubes collisions");
+		try {
+			var area = aabb.expandTowards(motion);
+			var shapes = ImmutableList.<VoxelShape>builderWithExpectedSize(entityShapes.size() + 1);
+			shapes.addAll(entityShapes);
+			var border = level.getWorldBorder();
+			if (border.isInsideCloseToBorder(entity, area))
+				shapes.add(border.getCollisionShape());
+			var blocks = new BlockCollisions(level, entity, area);
+			((INoCubesBlockCollisions) blocks).skipSmoothables();
+			blocks.forEachRemaining(shapes::add);
+			var vanillaShapes = shapes.build();
+
+			var mesher = NoCubesConfig.Server.mesher;
+			// The blocks that any box that the entity could move into is in
+			int minX = Mth.floor(area.minX - 1.0E-7D), maxX = Mth.floor(area.maxX + 1.0E-7D);
+			int minY = Mth.floor(area.minY - 1.0E-7D), maxY = Mth.floor(area.maxY + 1.0E-7D);
+			int minZ = Mth.floor(area.minZ - 1.0E-7D), maxZ = Mth.floor(area.maxZ + 1.0E-7D);
+			double x = motion.x, y = motion.y, z = motion.z;
+			if (y != 0) {
+				y = collideAxis(Axis.Y, aabb, y, vanillaShapes, level, mesher, minX, maxX, minY, maxY, minZ, maxZ);
+				if (y != 0)
+					aabb = aabb.move(0, y, 0);
+			}
+			boolean zFirst = Math.abs(x) < Math.abs(z);
+			if (zFirst && z != 0) {
+				z = collideAxis(Axis.Z, aabb, z, vanillaShapes, level, mesher, minX, maxX, minY, maxY, minZ, maxZ);
+				if (z != 0)
+					aabb = aabb.move(0, 0, z);
+			}
+			if (x != 0) {
+				x = collideAxis(Axis.X, aabb, x, vanillaShapes, level, mesher, minX, maxX, minY, maxY, minZ, maxZ);
+				if (!zFirst && x != 0)
+					aabb = aabb.move(x, 0, 0);
+			}
+			if (!zFirst && z != 0)
+				z = collideAxis(Axis.Z, aabb, z, vanillaShapes, level, mesher, minX, maxX, minY, maxY, minZ, maxZ);
+			return new Vec3(x, y, z);
+		} catch (Throwable t) {
+			Util.pauseInIde(t);
+			throw t;
+		} finally {
+			level.getProfiler().pop();
+		}
+	}
+
+	private static double collideAxis(
+		Axis axis, AABB aabb, double motion, List<VoxelShape> vanillaShapes, LevelReader world, Mesher mesher,
+		int minX, int maxX, int minY, int maxY, int minZ, int maxZ
+	) {
+		motion = Shapes.collide(axis, aabb, vanillaShapes, motion);
+		if (motion == 0)
+			return 0;
+		return SectionCollisions.collide(world, mesher, axis, aabb, motion, minX, maxX, minY, maxY, minZ, maxZ);
+	}
+
+	/**
+	 * Meshes a small area around the block, for when its section isn't available.
+	 */
+	private static VoxelShape generateCollisionShape(BlockGetter reader, BlockPos blockPos, Mesher mesher) {
+		var builder = new BoxShapeBuilder();
 		try (var area = new Area(reader, blockPos, ModUtil.VEC_ONE, mesher)) {
 			// See Mesher#translateToMeshStart for an explanation of this
 			var dx = Mesher.validateMeshOffset(area.start.getX() - blockPos.getX());
 			var dy = Mesher.validateMeshOffset(area.start.getY() - blockPos.getY());
 			var dz = Mesher.validateMeshOffset(area.start.getZ() - blockPos.getZ());
-			generate(area, mesher, (x0, y0, z0, x1, y1, z1) -> {
-				var shape = Shapes.box(
-					dx + x0, dy + y0, dz + z0,
-					dx + x1, dy + y1, dz + z1
-				);
-				ref[0] = Shapes.joinUnoptimized(ref[0], shape, BooleanOp.OR);
-				return true;
-			});
-		} finally {
-			if (reader instanceof Level)
-				((Level) reader).getProfiler().pop();
+			generate(area, mesher, (x0, y0, z0, x1, y1, z1) -> builder.accept(
+				dx + x0, dy + y0, dz + z0,
+				dx + x1, dy + y1, dz + z1
+			));
 		}
-		return ref[0];//.optimize();
+		return builder.build();
 	}
 
 	// region indev
@@ -162,7 +257,8 @@ public final class CollisionHandler {
 	}
 
 	public static void forEachCollisionRelativeToStart(CollisionGetter world, MutableBlockPos pos, int minX, int maxX, int minY, int maxY, int minZ, int maxZ, ShapeConsumer consumer) {
-		var mesher = NoCubesConfig.Server.mesher;
+		// The debugRenderMeshCollisions overlay meshes a big area every frame, it gets split up and meshed in parallel
+		var mesher = getParallelMesher(NoCubesConfig.Server.mesher);
 
 		var start = new BlockPos(minX, minY, minZ);
 		// Size is mutable and only correct until the Area constructor call
@@ -183,10 +279,20 @@ public final class CollisionHandler {
 		}
 	}
 
+	/**
+	 * Reuses the same wrapper until the mesher changes.
+	 */
+	private static ParallelMesher getParallelMesher(Mesher mesher) {
+		var parallelMesher = CollisionHandler.parallelMesher;
+		if (parallelMesher == null || !parallelMesher.wraps(mesher))
+			CollisionHandler.parallelMesher = parallelMesher = new ParallelMesher(mesher);
+		return parallelMesher;
+	}
+
 	// endregion indev
 
 	public static void generate(Area area, Mesher mesher, ShapeConsumer consumer) {
-		mesher.generateCollisions(area, NoCubes.smoothableHandler::isSmoothable, consumer);
+		mesher.generateCollisions(area, DensityTable.IS_SMOOTHABLE, consumer);
 	}
 
 	public static boolean generateShapes(Vec centre, Vec faceNormal, ShapeConsumer consumer, Face face) {
@@ -0,0 +1,561 @@
+package io.github.cadiboo.nocubes.collision;
+
+import io.github.cadiboo.nocubes.hooks.INoCubesChunkSection;
+import io.github.cadiboo.nocubes.mesh.Mesher;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
+import io.github.cadiboo.nocubes.util.Area;
+import io.github.cadiboo.nocubes.util.ModUtil;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction.Axis;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * The collision boxes of a whole chunk section, generated all at once and stored on the section (see {@link INoCubesChunkSection}).
+ * Vanilla asks for the collision shape of each block separately, meshing a small area around each of them meant that
+ * an entity touching 30 blocks meshed 30 overlapping areas every tick, now those queries just look up the boxes here.
+ * Moving entities don't ask for shapes at all, their bounding boxes are swept straight through the boxes (see
+ * {@link #collide} and {@link CollisionHandler#collideBoundingBox}).
+ * A heightfield of the tops of the boxes lets movement over the ground be answered without looking at the boxes at all
+ * (see {@link #collideWithHeights}).
+ * <p>
+ * The boxes depend on the blocks in the neighbouring sections too, so the modification count (see
+ * {@link INoCubesChunkSection#getModificationCount}) of every section around this one is remembered, and the boxes are
+ * regenerated if any of them (or the mesher or the smoothables) changed.
+ * Checking 27 sections for every block that is queried would cost more than the query itself, so the sections that are
+ * checked are marked as watched (see {@link INoCubesChunkSection#watch}) and changes to them are counted in
+ * {@link #MODIFICATIONS}. The sections only need to be checked again once that count changes.
+ * Sections that don't exist yet can't be watched, so if a neighbouring chunk isn't loaded the neighbours are checked
+ * every time until it is.
+ * Sections being unloaded aren't counted, the boxes that were generated while they were loaded are kept until something
+ * else changes.
+ */
+public final class SectionCollisions {
+
+	/**
+	 * How far outside the section collisions are generated, so that boxes from cells in neighbouring sections that poke
+	 * into this one are found too.
+	 */
+	private static final int MARGIN = 2;
+	private static final int SECTION_SIZE = ModUtil.CHUNK_SIZE.getX();
+	private static final int NEIGHBOURS = 3 * 3 * 3;
+	/**
+	 * How many columns of the heightfield there are along each horizontal axis of a block.
+	 */
+	private static final int HEIGHTS_PER_BLOCK = 4;
+	private static final int HEIGHTS_SIZE = SECTION_SIZE * HEIGHTS_PER_BLOCK;
+	/**
+	 * Incremented whenever a watched section changes.
+	 */
+	private static final AtomicInteger MODIFICATIONS = new AtomicInteger();
+	/**
+	 * The stamp of a neighbouring section whose chunk isn't loaded, see {@link #stampNeighbours}.
+	 */
+	private static final long NOT_LOADED = -1;
+	private static final ThreadLocal<long[]> NEIGHBOUR_STAMPS = ThreadLocal.withInitial(() -> new long[NEIGHBOURS]);
+
+	private final Mesher mesher;
+	private final int densityVersion;
+	private final long[] neighbourStamps;
+	/** Packed (x0, y0, z0, x1, y1, z1) of each box, relative to the start of the section. */
+	private final float[] boxes;
+	/** Where the boxes of each block start in {@link #blockBoxes}, indexed [y][z][x] like the section's states. */
+	private final int[] blockStarts;
+	/** The index of each box that intersects each block. */
+	private final int[] blockBoxes;
+	/**
+	 * The sides of each block (see {@link #findSmoothableSides}) that have a smoothable block next to them, indexed
+	 * like {@link #blockStarts}.
+	 */
+	private final byte[] smoothableSides;
+	/**
+	 * The top of the highest box in each column of the section, indexed [z][x].
+	 * Each block is split into {@link #HEIGHTS_PER_BLOCK}x{@link #HEIGHTS_PER_BLOCK} columns and a box is in every column
+	 * that it overlaps. Columns without any boxes are negative infinity.
+	 */
+	private final float[] heights;
+	/**
+	 * The value of {@link #MODIFICATIONS} when the neighbours were last checked and found to be the same.
+	 * Only used if all the neighbouring chunks were loaded when the boxes were generated.
+	 */
+	private volatile int checkedAt;
+	private final boolean allNeighboursLoaded;
+
+	private SectionCollisions(Mesher mesher, int densityVersion, long[] neighbourStamps, int checkedAt, float[] boxes, int[] blockStarts, int[] blockBoxes, byte[] smoothableSides, float[] heights) {
+		this.mesher = mesher;
+		this.densityVersion = densityVersion;
+		this.neighbourStamps = neighbourStamps;
+		this.allNeighboursLoaded = allLoaded(neighbourStamps);
+		this.boxes = boxes;
+		this.blockStarts = blockStarts;
+		this.blockBoxes = blockBoxes;
+		this.smoothableSides = smoothableSides;
+		this.heights = heights;
+		this.checkedAt = checkedAt;
+	}
+
+	/**
+	 * @return The collision shape of the block (relative to its position), or null if the section it is in isn't loaded
+	 */
+	static @Nullable VoxelShape getCollisionShape(LevelReader world, BlockPos blockPos, Mesher mesher) {
+		var section = getSection(world, blockPos);
+		if (section == null)
+			return null;
+		var sectionStart = new BlockPos(SectionPos.blockToSectionCoord(blockPos.getX()) << 4, SectionPos.blockToSectionCoord(blockPos.getY()) << 4, SectionPos.blockToSectionCoord(blockPos.getZ()) << 4);
+		return get(world, section, sectionStart, mesher).getShape(blockPos.getX() & 15, blockPos.getY() & 15, blockPos.getZ() & 15);
+	}
+
+	/**
+	 * Sweeps the AABB along the axis against the collision boxes of every block in the range, without creating any
+	 * {@link VoxelShape}s. Blocks in chunks that aren't loaded don't have any collisions.
+	 * Gives the same result as colliding with {@link Shapes#box} of each box (see {@link VoxelShape#collide}).
+	 *
+	 * @param minX The position of the first block to collide with (inclusive)
+	 * @param maxX The position of the last block to collide with (inclusive)
+	 * @return The motion, reduced so that the AABB doesn't move into any of the boxes (0 if it can't move at all)
+	 */
+	static double collide(LevelReader world, Mesher mesher, Axis axis, AABB aabb, double motion, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+		var sectionStart = new BlockPos.MutableBlockPos();
+		for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; ++chunkZ) {
+			for (int chunkX = minX >> 4; chunkX <= maxX >> 4; ++chunkX) {
+				@Nullable var chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.EMPTY, false);
+				if (chunk == null)
+					continue;
+				for (int sectionY = minY >> 4; sectionY <= maxY >> 4; ++sectionY) {
+					@Nullable var section = getSection(chunk.getSections(), sectionY - chunk.getMinSection());
+					if (section == null)
+						continue;
+					sectionStart.set(chunkX << 4, sectionY << 4, chunkZ << 4);
+					motion = get(world, section, sectionStart, mesher).collide(
+						axis, aabb, motion, sectionStart,
+						Math.max(minX - sectionStart.getX(), 0), Math.min(maxX - sectionStart.getX(), SECTION_SIZE - 1),
+						Math.max(minY - sectionStart.getY(), 0), Math.min(maxY - sectionStart.getY(), SECTION_SIZE - 1),
+						Math.max(minZ - sectionStart.getZ(), 0), Math.min(maxZ - sectionStart.getZ(), SECTION_SIZE - 1)
+					);
+					if (motion == 0)
+						return 0;
+				}
+			}
+		}
+		return motion;
+	}
+
+	/**
+	 * Called when a watched section changes, see {@link INoCubesChunkSection#watch}.
+	 */
+	public static void onSectionModified() {
+		MODIFICATIONS.incrementAndGet();
+	}
+
+	private static SectionCollisions get(LevelReader world, LevelChunkSection section, BlockPos sectionStart, Mesher mesher) {
+		var hooks = (INoCubesChunkSection) section;
+		// Read before the neighbours are checked, so a change while they are being checked isn't missed
+		var modifications = MODIFICATIONS.get();
+		var collisions = hooks.getCollisions();
+		long[] neighbourStamps = null;
+		if (collisions != null && collisions.mesher == mesher && collisions.densityVersion == DensityTable.getVersion()) {
+			if (collisions.allNeighboursLoaded && collisions.checkedAt == modifications)
+				return collisions;
+			neighbourStamps = stampNeighbours(world, sectionStart, NEIGHBOUR_STAMPS.get());
+			if (Arrays.equals(collisions.neighbourStamps, neighbourStamps)) {
+				collisions.checkedAt = modifications;
+				return collisions;
+			}
+		}
+		// The per-thread array gets reused, the new collisions need their own
+		neighbourStamps = neighbourStamps == null ? stampNeighbours(world, sectionStart, new long[NEIGHBOURS]) : neighbourStamps.clone();
+		collisions = generate(world, sectionStart.immutable(), mesher, neighbourStamps, modifications);
+		hooks.setCollisions(collisions);
+		return collisions;
+	}
+
+	private static @Nullable LevelChunkSection getSection(LevelReader world, BlockPos blockPos) {
+		var chunk = world.getChunk(SectionPos.blockToSectionCoord(blockPos.getX()), SectionPos.blockToSectionCoord(blockPos.getZ()), ChunkStatus.EMPTY, false);
+		if (chunk == null)
+			return null;
+		return getSection(chunk.getSections(), chunk.getSectionIndex(blockPos.getY()));
+	}
+
+	/**
+	 * Identifies the current version of each section around (and including) this one and watches them.
+	 * Sections that are replaced (e.g. their chunk was unloaded and loaded again) will almost always have a different
+	 * identity hash, sections outside the world are stamped with 0 and sections in chunks that aren't loaded with
+	 * {@link #NOT_LOADED}.
+	 *
+	 * @param toUse An array of {@link #NEIGHBOURS} longs
+	 */
+	private static long[] stampNeighbours(LevelReader world, BlockPos sectionStart, long[] toUse) {
+		int index = 0;
+		int sectionY = SectionPos.blockToSectionCoord(sectionStart.getY());
+		for (int chunkZ = (sectionStart.getZ() >> 4) - 1; chunkZ <= (sectionStart.getZ() >> 4) + 1; ++chunkZ) {
+			for (int chunkX = (sectionStart.getX() >> 4) - 1; chunkX <= (sectionStart.getX() >> 4) + 1; ++chunkX) {
+				@Nullable var chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.EMPTY, false);
+				for (int y = sectionY - 1; y <= sectionY + 1; ++y) {
+					if (chunk == null) {
+						toUse[index++] = NOT_LOADED;
+						continue;
+					}
+					@Nullable var section = getSection(chunk.getSections(), y - chunk.getMinSection());
+					if (section == null) {
+						toUse[index++] = 0;
+						continue;
+					}
+					var hooks = (INoCubesChunkSection) section;
+					hooks.watch();
+					toUse[index++] = (long) System.identityHashCode(section) << 32 | (hooks.getModificationCount() & 0xFFFFFFFFL);
+				}
+			}
+		}
+		return toUse;
+	}
+
+	private static boolean allLoaded(long[] neighbourStamps) {
+		for (var stamp : neighbourStamps)
+			if (stamp == NOT_LOADED)
+				return false;
+		return true;
+	}
+
+	private static @Nullable LevelChunkSection getSection(LevelChunkSection[] sections, int sectionIndex) {
+		return sectionIndex < 0 || sectionIndex >= sections.length ? null : sections[sectionIndex];
+	}
+
+	/**
+	 * @param modifications The value of {@link #MODIFICATIONS} before the neighbours were stamped
+	 */
+	private static SectionCollisions generate(LevelReader world, BlockPos sectionStart, Mesher mesher, long[] neighbourStamps, int modifications) {
+		var densityVersion = DensityTable.getVersion();
+		var start = sectionStart.offset(-MARGIN, -MARGIN, -MARGIN);
+		var size = SECTION_SIZE + MARGIN * 2;
+		try (var area = new Area(world, start, new BlockPos(size, size, size), mesher)) {
+			// See Mesher#translateToMeshStart for an explanation of this
+			var builder = new Builder(
+				Mesher.validateMeshOffset(area.start.getX() - start.getX()) - MARGIN,
+				Mesher.validateMeshOffset(area.start.getY() - start.getY()) - MARGIN,
+				Mesher.validateMeshOffset(area.start.getZ() - start.getZ()) - MARGIN
+			);
+			CollisionHandler.generate(area, mesher, builder);
+			var blocks = area.getAndCacheBlocks();
+			var smoothableSides = findSmoothableSides(
+				index -> DensityTable.IS_SMOOTHABLE.test(blocks[index]), area.size.getX(), area.size.getY(),
+				sectionStart.getX() - area.start.getX(), sectionStart.getY() - area.start.getY(), sectionStart.getZ() - area.start.getZ()
+			);
+			return builder.build(mesher, densityVersion, neighbourStamps, modifications, smoothableSides);
+		}
+	}
+
+	/**
+	 * Like {@link #collide(LevelReader, Mesher, Axis, AABB, double, int, int, int, int, int, int)} but only for the
+	 * boxes in this section.
+	 *
+	 * @param minX The position of the first block to collide with, relative to the start of the section
+	 */
+	double collide(Axis axis, AABB aabb, double motion, BlockPos sectionStart, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+		var fromHeights = collideWithHeights(axis, aabb, motion, sectionStart);
+		if (!Double.isNaN(fromHeights))
+			return fromHeights;
+		return collideWithBoxes(axis, aabb, motion, sectionStart, minX, maxX, minY, maxY, minZ, maxZ);
+	}
+
+	/**
+	 * Most queries come from entities standing on or walking over the ground, where every box near them is below their feet.
+	 * Those can be answered exactly by looking at the tops of the columns of the heightfield that the AABB sweeps through:
+	 * - Moving sideways, nothing can get in the way if every box is below the feet
+	 * - Moving down, if the highest box is below the feet and a box that high is definitely under the AABB (it's in a
+	 * column that is completely covered by the AABB) then that's the box it lands on
+	 * Anything else (e.g. slopes, overhangs, cave ceilings and AABBs that aren't completely above this section) needs
+	 * the boxes to be checked.
+	 *
+	 * @return The motion, or NaN if it can't be worked out from the heightfield
+	 */
+	double collideWithHeights(Axis axis, AABB aabb, double motion, BlockPos sectionStart) {
+		if (axis == Axis.Y && motion > 0)
+			return Double.NaN;
+		// The area that the AABB sweeps through, in the section's space
+		double minX = aabb.minX - sectionStart.getX(), maxX = aabb.maxX - sectionStart.getX();
+		double minZ = aabb.minZ - sectionStart.getZ(), maxZ = aabb.maxZ - sectionStart.getZ();
+		if (axis == Axis.X) {
+			minX = Math.min(minX, minX + motion);
+			maxX = Math.max(maxX, maxX + motion);
+		} else if (axis == Axis.Z) {
+			minZ = Math.min(minZ, minZ + motion);
+			maxZ = Math.max(maxZ, maxZ + motion);
+		}
+		// Boxes that poke out of the section aren't in the heightfield outside it
+		if (minX - Shapes.EPSILON < 0 || maxX + Shapes.EPSILON > SECTION_SIZE || minZ - Shapes.EPSILON < 0 || maxZ + Shapes.EPSILON > SECTION_SIZE)
+			return Double.NaN;
+		double feet = aabb.minY - sectionStart.getY();
+		// Includes columns that only touch the area, so it is never lower than the highest box under the AABB
+		float highest = getHighest(
+			Mth.floor((minX - Shapes.EPSILON) * HEIGHTS_PER_BLOCK), Mth.floor((maxX + Shapes.EPSILON) * HEIGHTS_PER_BLOCK),
+			Mth.floor((minZ - Shapes.EPSILON) * HEIGHTS_PER_BLOCK), Mth.floor((maxZ + Shapes.EPSILON) * HEIGHTS_PER_BLOCK)
+		);
+		if (axis != Axis.Y)
+			return highest <= feet + Shapes.EPSILON ? motion : Double.NaN;
+		if (highest <= feet + motion)
+			return motion; // Nothing to land on within reach
+		if (highest > feet + Shapes.EPSILON)
+			return Double.NaN;
+		// Only includes columns that are completely inside the area (the boxes in them definitely overlap the AABB)
+		float highestUnder = getHighest(
+			Mth.ceil((minX + Shapes.EPSILON) * HEIGHTS_PER_BLOCK), Mth.floor((maxX - Shapes.EPSILON) * HEIGHTS_PER_BLOCK) - 1,
+			Mth.ceil((minZ + Shapes.EPSILON) * HEIGHTS_PER_BLOCK), Mth.floor((maxZ - Shapes.EPSILON) * HEIGHTS_PER_BLOCK) - 1
+		);
+		if (highestUnder != highest)
+			return Double.NaN;
+		motion = Math.max(motion, highest - feet);
+		return Math.abs(motion) < Shapes.EPSILON ? 0 : motion;
+	}
+
+	/**
+	 * @param minX The first column (inclusive), may be outside the section
+	 * @param maxX The last column (inclusive), may be outside the section
+	 * @return The top of the highest box in the columns
+	 */
+	private float getHighest(int minX, int maxX, int minZ, int maxZ) {
+		var heights = this.heights;
+		float highest = Float.NEGATIVE_INFINITY;
+		for (int z = Math.max(minZ, 0), endZ = Math.min(maxZ, HEIGHTS_SIZE - 1); z <= endZ; ++z)
+			for (int x = Math.max(minX, 0), endX = Math.min(maxX, HEIGHTS_SIZE - 1); x <= endX; ++x)
+				highest = Math.max(highest, heights[z * HEIGHTS_SIZE + x]);
+		return highest;
+	}
+
+	/**
+	 * Like {@link #collide(Axis, AABB, double, BlockPos, int, int, int, int, int, int)} but always checks the boxes.
+	 */
+	double collideWithBoxes(Axis axis, AABB aabb, double motion, BlockPos sectionStart, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+		// Work in the section's space so that the boxes don't need to be moved
+		double[] min = {aabb.minX - sectionStart.getX(), aabb.minY - sectionStart.getY(), aabb.minZ - sectionStart.getZ()};
+		double[] max = {aabb.maxX - sectionStart.getX(), aabb.maxY - sectionStart.getY(), aabb.maxZ - sectionStart.getZ()};
+		int a = axis.ordinal();
+		int b = (a + 1) % 3;
+		int c = (a + 2) % 3;
+		var boxes = this.boxes;
+		var blockStarts = this.blockStarts;
+		var blockBoxes = this.blockBoxes;
+		for (int y = minY; y <= maxY; ++y) {
+			for (int z = minZ; z <= maxZ; ++z) {
+				for (int x = minX; x <= maxX; ++x) {
+					int block = (y << 8) | (z << 4) | x;
+					for (int i = blockStarts[block], end = blockStarts[block + 1]; i < end; ++i) {
+						int pointer = blockBoxes[i] * 6;
+						// Same as VoxelShape#collide, the box has to overlap the AABB (not just touch it) on the other axes
+						if (boxes[pointer + 3 + b] <= min[b] + Shapes.EPSILON || boxes[pointer + b] >= max[b] - Shapes.EPSILON ||
+							boxes[pointer + 3 + c] <= min[c] + Shapes.EPSILON || boxes[pointer + c] >= max[c] - Shapes.EPSILON)
+							continue;
+						if (motion > 0) {
+							double boxMin = boxes[pointer + a];
+							if (boxMin >= max[a] - Shapes.EPSILON)
+								motion = Math.min(motion, boxMin - max[a]);
+						} else {
+							double boxMax = boxes[pointer + 3 + a];
+							if (boxMax <= min[a] + Shapes.EPSILON)
+								motion = Math.max(motion, boxMax - min[a]);
+						}
+						if (Math.abs(motion) < Shapes.EPSILON)
+							return 0;
+					}
+				}
+			}
+		}
+		return motion;
+	}
+
+	/**
+	 * Bit 0 of each block is set if the block at -X is smoothable, bit 1 for +X, then -Y, +Y, -Z and +Z.
+	 *
+	 * @param isSmoothable If the block at the index (into an area of sizeX * sizeY * anything blocks) is smoothable
+	 * @param offsetX      The position of the start of the section in the area, there must be at least one block around it
+	 */
+	static byte[] findSmoothableSides(IntPredicate isSmoothable, int sizeX, int sizeY, int offsetX, int offsetY, int offsetZ) {
+		var sides = new byte[SECTION_SIZE * SECTION_SIZE * SECTION_SIZE];
+		int sliceSize = sizeX * sizeY;
+		for (int y = 0; y < SECTION_SIZE; ++y) {
+			for (int z = 0; z < SECTION_SIZE; ++z) {
+				int index = ModUtil.get3dIndexInto1dArray(offsetX, y + offsetY, z + offsetZ, sizeX, sizeY);
+				for (int x = 0; x < SECTION_SIZE; ++x, ++index) {
+					int side = 0;
+					if (isSmoothable.test(index - 1))
+						side |= 1;
+					if (isSmoothable.test(index + 1))
+						side |= 1 << 1;
+					if (isSmoothable.test(index - sizeX))
+						side |= 1 << 2;
+					if (isSmoothable.test(index + sizeX))
+						side |= 1 << 3;
+					if (isSmoothable.test(index - sliceSize))
+						side |= 1 << 4;
+					if (isSmoothable.test(index + sliceSize))
+						side |= 1 << 5;
+					sides[(y << 8) | (z << 4) | x] = (byte) side;
+				}
+			}
+		}
+		return sides;
+	}
+
+	/**
+	 * Boxes can cover many blocks (especially after being merged, see {@link ShapeMerger}) so, where possible, only the
+	 * part of each one that is inside the block is used. Otherwise the same big box would be collided with once for
+	 * every block it covers.
+	 * A box is only cut off at a side of the block if the block on the other side is smoothable, so that the part
+	 * beyond it is part of that block's shape instead. Vanilla only asks us for the shapes of smoothable blocks, the
+	 * parts of boxes that stick out into other blocks (e.g. air above a slope) have to stay part of this one.
+	 *
+	 * @param x The position of the block, relative to the start of the section
+	 */
+	private VoxelShape getShape(int x, int y, int z) {
+		var builder = new BoxShapeBuilder();
+		forEachBoxInBlock(x, y, z, builder);
+		return builder.build();
+	}
+
+	/**
+	 * Calls the consumer with the part of each box that belongs to the block (see {@link #getShape}), relative to the
+	 * block's position.
+	 *
+	 * @param x The position of the block, relative to the start of the section
+	 * @return If the consumer accepted every box
+	 */
+	boolean forEachBoxInBlock(int x, int y, int z, ShapeConsumer consumer) {
+		int block = (y << 8) | (z << 4) | x;
+		var boxes = this.boxes;
+		int sides = smoothableSides[block];
+		float minX = (sides & 1) != 0 ? x : Float.NEGATIVE_INFINITY, maxX = (sides & 1 << 1) != 0 ? x + 1 : Float.POSITIVE_INFINITY;
+		float minY = (sides & 1 << 2) != 0 ? y : Float.NEGATIVE_INFINITY, maxY = (sides & 1 << 3) != 0 ? y + 1 : Float.POSITIVE_INFINITY;
+		float minZ = (sides & 1 << 4) != 0 ? z : Float.NEGATIVE_INFINITY, maxZ = (sides & 1 << 5) != 0 ? z + 1 : Float.POSITIVE_INFINITY;
+		for (int i = blockStarts[block], end = blockStarts[block + 1]; i < end; ++i) {
+			int pointer = blockBoxes[i] * 6;
+			var x0 = Math.max(boxes[pointer], minX);
+			var y0 = Math.max(boxes[pointer + 1], minY);
+			var z0 = Math.max(boxes[pointer + 2], minZ);
+			var x1 = Math.min(boxes[pointer + 3], maxX);
+			var y1 = Math.min(boxes[pointer + 4], maxY);
+			var z1 = Math.min(boxes[pointer + 5], maxZ);
+			// Boxes that only touch the block end up flat
+			if (x1 - x0 < Shapes.EPSILON || y1 - y0 < Shapes.EPSILON || z1 - z0 < Shapes.EPSILON)
+				continue;
+			if (!consumer.accept(x0 - x, y0 - y, z0 - z, x1 - x, y1 - y, z1 - z))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the boxes that touch the section and works out which blocks each one intersects.
+	 */
+	static final class Builder implements ShapeConsumer {
+		private final int offsetX;
+		private final int offsetY;
+		private final int offsetZ;
+		private float[] boxes = new float[6 * 64];
+		private int size;
+
+		Builder(int offsetX, int offsetY, int offsetZ) {
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.offsetZ = offsetZ;
+		}
+
+		@Override
+		public boolean accept(double x0, double y0, double z0, double x1, double y1, double z1) {
+			x0 += offsetX;
+			y0 += offsetY;
+			z0 += offsetZ;
+			x1 += offsetX;
+			y1 += offsetY;
+			z1 += offsetZ;
+			if (x1 < 0 || y1 < 0 || z1 < 0 || x0 > SECTION_SIZE || y0 > SECTION_SIZE || z0 > SECTION_SIZE)
+				return true; // Only generated because of the margin
+			// Same as Shapes.box, flat boxes don't have any volume to collide with
+			if (x1 - x0 < Shapes.EPSILON || y1 - y0 < Shapes.EPSILON || z1 - z0 < Shapes.EPSILON)
+				return true;
+			int pointer = size * 6;
+			if (pointer == boxes.length)
+				boxes = Arrays.copyOf(boxes, boxes.length * 2);
+			var boxes = this.boxes;
+			boxes[pointer] = (float) x0;
+			boxes[pointer + 1] = (float) y0;
+			boxes[pointer + 2] = (float) z0;
+			boxes[pointer + 3] = (float) x1;
+			boxes[pointer + 4] = (float) y1;
+			boxes[pointer + 5] = (float) z1;
+			++size;
+			return true;
+		}
+
+		/**
+		 * @param smoothableSides From {@link #findSmoothableSides}
+		 */
+		SectionCollisions build(Mesher mesher, int densityVersion, long[] neighbourStamps, int modifications, byte[] smoothableSides) {
+			var boxes = Arrays.copyOf(this.boxes, size * 6);
+			// Count the boxes in each block, then turn the counts into where each block's boxes start
+			var blockStarts = new int[SECTION_SIZE * SECTION_SIZE * SECTION_SIZE + 1];
+			var range = new int[6];
+			for (int box = 0; box < size; ++box) {
+				getBlockRange(boxes, box, range);
+				for (int y = range[1]; y <= range[4]; ++y)
+					for (int z = range[2]; z <= range[5]; ++z)
+						for (int x = range[0]; x <= range[3]; ++x)
+							++blockStarts[((y << 8) | (z << 4) | x) + 1];
+			}
+			for (int block = 1; block < blockStarts.length; ++block)
+				blockStarts[block] += blockStarts[block - 1];
+			var blockBoxes = new int[blockStarts[blockStarts.length - 1]];
+			var filled = Arrays.copyOf(blockStarts, blockStarts.length - 1);
+			for (int box = 0; box < size; ++box) {
+				getBlockRange(boxes, box, range);
+				for (int y = range[1]; y <= range[4]; ++y)
+					for (int z = range[2]; z <= range[5]; ++z)
+						for (int x = range[0]; x <= range[3]; ++x)
+							blockBoxes[filled[(y << 8) | (z << 4) | x]++] = box;
+			}
+			return new SectionCollisions(mesher, densityVersion, neighbourStamps, modifications, boxes, blockStarts, blockBoxes, smoothableSides, buildHeights(boxes));
+		}
+
+		private float[] buildHeights(float[] boxes) {
+			var heights = new float[HEIGHTS_SIZE * HEIGHTS_SIZE];
+			Arrays.fill(heights, Float.NEGATIVE_INFINITY);
+			for (int pointer = 0, end = size * 6; pointer < end; pointer += 6) {
+				// The columns that the box overlaps by more than the distance that VoxelShape#collide ignores
+				int minX = Math.max(Mth.floor((boxes[pointer] + Shapes.EPSILON) * HEIGHTS_PER_BLOCK), 0);
+				int minZ = Math.max(Mth.floor((boxes[pointer + 2] + Shapes.EPSILON) * HEIGHTS_PER_BLOCK), 0);
+				int maxX = Math.min(Mth.ceil((boxes[pointer + 3] - Shapes.EPSILON) * HEIGHTS_PER_BLOCK), HEIGHTS_SIZE) - 1;
+				int maxZ = Math.min(Mth.ceil((boxes[pointer + 5] - Shapes.EPSILON) * HEIGHTS_PER_BLOCK), HEIGHTS_SIZE) - 1;
+				float top = boxes[pointer + 4];
+				for (int z = minZ; z <= maxZ; ++z)
+					for (int x = minX; x <= maxX; ++x)
+						heights[z * HEIGHTS_SIZE + x] = Math.max(heights[z * HEIGHTS_SIZE + x], top);
+			}
+			return heights;
+		}
+
+		/**
+		 * Finds the blocks in the section that the box intersects (not just touches), flat boxes intersect the block they lie in.
+		 *
+		 * @param toUse Filled with the min x, y, z then max x, y, z (all inclusive) of the blocks
+		 */
+		private static void getBlockRange(float[] boxes, int box, int[] toUse) {
+			int pointer = box * 6;
+			for (int axis = 0; axis < 3; ++axis) {
+				int min = Mth.floor(boxes[pointer + axis]);
+				int max = Math.max(min, Mth.ceil(boxes[pointer + 3 + axis]) - 1);
+				toUse[axis] = Mth.clamp(min, 0, SECTION_SIZE - 1);
+				toUse[axis + 3] = Mth.clamp(max, 0, SECTION_SIZE - 1);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+package io.github.cadiboo.nocubes.collision;
+
+/**
+ * Sits between a mesher and the real consumer and cuts down on the number of boxes it generates.
+ * Boxes that are inside another box are dropped and boxes that line up with the box before them (like the full cubes of
+ * a row of cells) are merged into one.
+ * Only the last few boxes are compared against, meshers generate cells in order so neighbouring boxes are usually
+ * generated close together.
+ * The union of the boxes is exactly the same, there are just fewer of them to collide with.
+ * Call {@link #finish()} once the mesher is done to pass on the last boxes.
+ */
+public final class ShapeMerger implements ShapeConsumer {
+
+	/**
+	 * How many boxes are held back to be compared against, the 4 boxes of a face and the faces of the cells next to it.
+	 */
+	private static final int WINDOW = 8;
+
+	private final ShapeConsumer consumer;
+	/** Packed (x0, y0, z0, x1, y1, z1) of the boxes that haven't been passed on yet, oldest first. */
+	private final double[] pending = new double[WINDOW * 6];
+	private final double[] box = new double[6];
+	private int pendingCount;
+	private boolean stopped;
+
+	public ShapeMerger(ShapeConsumer consumer) {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public boolean accept(double x0, double y0, double z0, double x1, double y1, double z1) {
+		var pending = this.pending;
+		var box = this.box;
+		box[0] = x0;
+		box[1] = y0;
+		box[2] = z0;
+		box[3] = x1;
+		box[4] = y1;
+		box[5] = z1;
+		for (int i = 0; i < pendingCount; ++i)
+			if (contains(pending, i * 6, box, 0))
+				return true;
+
+		// Drop the boxes that the new one contains
+		int kept = 0;
+		for (int i = 0; i < pendingCount; ++i) {
+			if (contains(box, 0, pending, i * 6))
+				continue;
+			if (kept != i)
+				System.arraycopy(pending, i * 6, pending, kept * 6, 6);
+			++kept;
+		}
+		pendingCount = kept;
+
+		if (pendingCount > 0 && tryExtend(pending, (pendingCount - 1) * 6, box))
+			return true;
+
+		if (pendingCount == WINDOW) {
+			if (!pass(pending, 0))
+				return false;
+			System.arraycopy(pending, 6, pending, 0, (WINDOW - 1) * 6);
+			--pendingCount;
+		}
+		System.arraycopy(box, 0, pending, pendingCount * 6, 6);
+		++pendingCount;
+		return true;
+	}
+
+	/**
+	 * Passes on the boxes that are still being held back.
+	 *
+	 * @return false if the consumer didn't want any more shapes
+	 */
+	public boolean finish() {
+		if (stopped)
+			return false;
+		for (int i = 0; i < pendingCount; ++i)
+			if (!pass(pending, i * 6))
+				return false;
+		pendingCount = 0;
+		return true;
+	}
+
+	private boolean pass(double[] boxes, int pointer) {
+		stopped = !consumer.accept(boxes[pointer], boxes[pointer + 1], boxes[pointer + 2], boxes[pointer + 3], boxes[pointer + 4], boxes[pointer + 5]);
+		return !stopped;
+	}
+
+	private static boolean contains(double[] outer, int outerPointer, double[] inner, int innerPointer) {
+		for (int axis = 0; axis < 3; ++axis)
+			if (inner[innerPointer + axis] < outer[outerPointer + axis] || inner[innerPointer + 3 + axis] > outer[outerPointer + 3 + axis])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Extends the existing box to cover the new one if they are the same on two axes and touch on the third.
+	 *
+	 * @return If the box was extended
+	 */
+	private static boolean tryExtend(double[] boxes, int pointer, double[] box) {
+		for (int axis = 0; axis < 3; ++axis) {
+			int b = (axis + 1) % 3;
+			int c = (axis + 2) % 3;
+			if (boxes[pointer + b] != box[b] || boxes[pointer + 3 + b] != box[3 + b] || boxes[pointer + c] != box[c] || boxes[pointer + 3 + c] != box[3 + c])
+				continue;
+			if (boxes[pointer + 3 + axis] == box[axis]) {
+				boxes[pointer + 3 + axis] = box[3 + axis];
+				return true;
+			}
+			if (boxes[pointer + axis] == box[3 + axis]) {
+				boxes[pointer + axis] = box[axis];
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -6,9 +6,11 @@ import com.electronwill.nightconfig.core.io.ConfigParser;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.github.cadiboo.nocubes.NoCubes;
+import io.github.cadiboo.nocubes.client.render.MeshRenderer;
 import io.github.cadiboo.nocubes.mesh.*;
 import io.github.cadiboo.nocubes.network.NoCubesNetwork;
 import io.github.cadiboo.nocubes.network.S2CUpdateServerConfig;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
 import io.github.cadiboo.nocubes.util.BlockStateConverter;
 import io.github.cadiboo.nocubes.util.ModUtil;
 import net.minecraft.world.level.block.Block;
@@ -90,6 +92,9 @@ public final class NoCubesConfig {
 		public static boolean moreSnow;
 		public static boolean fixPlantHeight;
 		public static boolean grassTufts;
+		public static boolean greedyCubicMeshing;
+		public static int meshCacheSizeMegabytes;
+		public static boolean columnMeshing;
 
 		public static boolean debugEnabled;
 		public static boolean debugOutlineSmoothables;
@@ -121,6 +126,10 @@ public final class NoCubesConfig {
 			moreSnow = INSTANCE.moreSnow.get();
 			fixPlantHeight = INSTANCE.fixPlantHeight.get();
 			grassTufts = INSTANCE.grassTufts.get();
+			greedyCubicMeshing = INSTANCE.greedyCubicMeshing.get();
+			meshCacheSizeMegabytes = INSTANCE.meshCacheSizeMegabytes.get();
+			DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> MeshRenderer.setMeshCacheBudget(meshCacheSizeMegabytes * 1024L * 1024L));
+			columnMeshing = INSTANCE.columnMeshing.get();
 
 			if (oldRender != render)
 				reloadAllChunks("custom rendering was toggled to %b in the client config", render);
@@ -137,7 +146,7 @@ public final class NoCubesConfig {
 		}
 
 		private static int hashChunkRenderSettings() {
-			return Objects.hash(betterGrassSides, moreSnow, fixPlantHeight, grassTufts);
+			return Objects.hash(betterGrassSides, moreSnow, fixPlantHeight, grassTufts, greedyCubicMeshing);
 		}
 
 		public static void updateRender(boolean newValue) {
@@ -160,6 +169,9 @@ public final class NoCubesConfig {
 			final BooleanValue moreSnow;
 			final BooleanValue fixPlantHeight;
 			final BooleanValue grassTufts;
+			final BooleanValue greedyCubicMeshing;
+			final IntValue meshCacheSizeMegabytes;
+			final BooleanValue columnMeshing;
 
 			final BooleanValue debugEnabled;
 			final BooleanValue debugOutlineSmoothables;
@@ -223,6 +235,32 @@ public final class NoCubesConfig {
 					.comment("If small tufts of grass should be rendered on top of grass blocks, similar to BetterFoliage's 'Short Grass' feature")
 					.define("grassTufts", false);
 
+				greedyCubicMeshing = builder
+					.translation(NoCubes.MOD_ID + ".config.greedyCubicMeshing")
+					.comment(
+						"If the cubic meshers should merge the faces of neighbouring blocks into larger faces",
+						"Textures can't be repeated across a merged face, so each block's part of it is still rendered with its own texture and lighting"
+					)
+					.define("greedyCubicMeshing", false);
+
+				meshCacheSizeMegabytes = builder
+					.translation(NoCubes.MOD_ID + ".config.meshCacheSizeMegabytes")
+					.comment(
+						"How much memory (in megabytes) can be used to remember the meshes of recently rendered chunks",
+						"Lets chunks that are re-rendered without their blocks changing (e.g. because of lighting updates) skip generating their mesh again",
+						"0 disables the cache"
+					)
+					.defineInRange("meshCacheSizeMegabytes", 32, 0, 1024);
+
+				columnMeshing = builder
+					.translation(NoCubes.MOD_ID + ".config.columnMeshing")
+					.comment(
+						"If chunks that haven't been rendered before should be meshed in vertical groups of 4 instead of one at a time",
+						"Makes loading chunks faster because the blocks on the borders between them are only looked at once",
+						"Only works with the smooth meshers and when the mesh cache is enabled"
+					)
+					.define("columnMeshing", false);
+
 				builder
 					.push("debug");
 				{
@@ -536,9 +574,9 @@ public final class NoCubesConfig {
 			LOG.debug("Updating user-defined smoothable string lists");
 			var toAddTo = newValue ? whitelist : blacklist;
 			var toRemoveFrom = newValue ? blacklist : whitelist;
+			NoCubes.smoothableHandler.setSmoothable(newValue, states);
 			for (var state : states) {
 				var string = BlockStateConverter.toString(state);
-				NoCubes.smoothableHandler.setSmoothable(newValue, state);
 				if (!toAddTo.contains(string))
 					toAddTo.add(string);
 				//noinspection StatementWithEmptyBody
@@ -556,8 +594,10 @@ public final class NoCubesConfig {
 				.flatMap(block -> ModUtil.getStates(block).parallelStream())
 				.forEach(state -> {
 					var smoothable = (whitelisted.contains(state) || Smoothables.DEFAULT_SMOOTHABLES.contains(state)) && !blacklisted.contains(state);
-					NoCubes.smoothableHandler.setSmoothable(smoothable, state);
+					// The table is rebuilt once all of them are set
+					NoCubes.smoothableHandler.setSmoothableWithoutDensity(smoothable, state);
 				});
+			DensityTable.rebuild(NoCubes.smoothableHandler);
 		}
 
 		static Set<BlockState> parseBlockStates(List<? extends String> list) {
@@ -0,0 +1,17 @@
+package io.github.cadiboo.nocubes.hooks;
+
+import io.github.cadiboo.nocubes.collision.CollisionHandler;
+
+/**
+ * Implemented (by Mixin) on BlockCollisions.
+ */
+public interface INoCubesBlockCollisions {
+
+	/**
+	 * Makes the iterator skip the shapes of blocks that have smooth collisions, for when they are collided with
+	 * separately (see {@link CollisionHandler#collideBoundingBox}).
+	 * Must be called before iterating.
+	 */
+	void skipSmoothables();
+
+}
@@ -0,0 +1,48 @@
+package io.github.cadiboo.nocubes.hooks;
+
+import io.github.cadiboo.nocubes.collision.SectionCollisions;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implemented (by Mixin) on LevelChunkSection.
+ */
+public interface INoCubesChunkSection {
+
+	/**
+	 * The densities of a section and the {@link DensityTable#getVersion} that they were computed with.
+	 */
+	record Densities(byte[] values, int version) {
+	}
+
+	/**
+	 * The density of each block in the section (with the smoothables from the config) multiplied by
+	 * {@link DensityTable#QUANTISATION_SCALE}, indexed [y][z][x] like the section's states.
+	 * Kept up to date as blocks are changed, recomputed if the smoothables change or the section is read from the network.
+	 * Safe to call from any thread, the array must not be modified.
+	 */
+	byte[] getTerrainDensities();
+
+	/**
+	 * Incremented every time a block in the section changes (or the whole section is read from the network), lets caches of things computed from the section's blocks
+	 * (and its neighbours' blocks) check if they are still valid.
+	 */
+	int getModificationCount();
+
+	/**
+	 * Called when something is cached that depends on the section's blocks.
+	 * Changes to watched sections are counted (see {@link SectionCollisions#onSectionModified}) so that the caches don't
+	 * have to check every section they depend on each time they are used.
+	 * New sections are never watched, caches that depend on sections that don't exist yet have to check for them.
+	 */
+	void watch();
+
+	/**
+	 * The collisions that were last generated for the section, they may be out of date.
+	 */
+	@Nullable SectionCollisions getCollisions();
+
+	void setCollisions(@Nullable SectionCollisions collisions);
+
+}
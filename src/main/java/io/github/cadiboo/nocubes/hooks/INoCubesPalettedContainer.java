@@ -0,0 +1,23 @@
+package io.github.cadiboo.nocubes.hooks;
+
+import net.minecraft.util.BitStorage;
+
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+/**
+ * Implemented (by Mixin) on PalettedContainer.
+ */
+public interface INoCubesPalettedContainer<T> {
+
+	/**
+	 * Lets the palette and the index into it of each value be read directly, instead of looking up every value.
+	 * Both are read from the same snapshot of the container so they match even if it is resized on another thread.
+	 *
+	 * @param entryConsumer Called with each entry in the palette, in the order of their indices
+	 * @return The index in the palette of each value (indexed [y][z][x] for chunk sections),
+	 * or null (and the consumer isn't called) if the container uses the global palette
+	 */
+	@Nullable BitStorage getPaletteEntries(Consumer<T> entryConsumer);
+
+}
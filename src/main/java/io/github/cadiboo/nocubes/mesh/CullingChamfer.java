@@ -45,14 +45,14 @@ public class CullingChamfer extends SimpleMesher {
 
 		var pos = new MutableBlockPos();
 		var face = new Face();
-		generate(area, isSmoothable, (x, y, z, index) -> {
-			var blocks = area.getAndCacheBlocks();
-			boolean posY = !isSmoothable.test(blocks[index + height]);
-			boolean negY = !isSmoothable.test(blocks[index - height]);
-			boolean posX = !isSmoothable.test(blocks[index + 1]);
-			boolean negX = !isSmoothable.test(blocks[index - 1]);
-			boolean posZ = !isSmoothable.test(blocks[index + width * height]);
-			boolean negZ = !isSmoothable.test(blocks[index - width * height]);
+		var occupancy = generateOccupancy(area, isSmoothable);
+		generate(area, occupancy, (x, y, z, index) -> {
+			boolean posY = !isOccupied(occupancy, index + height);
+			boolean negY = !isOccupied(occupancy, index - height);
+			boolean posX = !isOccupied(occupancy, index + 1);
+			boolean negX = !isOccupied(occupancy, index - 1);
+			boolean posZ = !isOccupied(occupancy, index + width * height);
+			boolean negZ = !isOccupied(occupancy, index - width * height);
 
 			float maxZ = posZ ? max : 1;
 			float minZ = negZ ? min : 0;
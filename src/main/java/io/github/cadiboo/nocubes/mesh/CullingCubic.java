@@ -29,6 +29,11 @@ public class CullingCubic extends SimpleMesher {
 		generate(area, isSmoothable, (x, y, z, index) -> ShapeConsumer.acceptFullCube(x, y, z, action));
 	}
 
+	@Override
+	public void generateGeometryMergedInternal(Area area, Predicate<BlockState> isSmoothable, FaceMergeKey mergeKey, FaceAction action) {
+		generateGreedy(area, generateOccupancy(area, isSmoothable), true, mergeKey, action);
+	}
+
 	@Override
 	public void generateGeometryInternal(Area area, Predicate<BlockState> isSmoothable, FaceAction action) {
 		final float min = 0F;
@@ -40,10 +45,10 @@ public class CullingCubic extends SimpleMesher {
 
 		var pos = new BlockPos.MutableBlockPos();
 		var face = new Face();
-		generate(area, isSmoothable, (x, y, z, index) -> {
-			var blocks = area.getAndCacheBlocks();
+		var occupancy = generateOccupancy(area, isSmoothable);
+		generate(area, occupancy, (x, y, z, index) -> {
 			// Up (pos y)
-			if (!isSmoothable.test(blocks[index + height]))
+			if (!isOccupied(occupancy, index + height))
 				if (!action.apply(pos.set(x, y, z), face.set(
 					x + max, y + max, z + max,
 					x + max, y + max, z + min,
@@ -53,7 +58,7 @@ public class CullingCubic extends SimpleMesher {
 					return false;
 
 			// Down (neg y)
-			if (!isSmoothable.test(blocks[index - height]))
+			if (!isOccupied(occupancy, index - height))
 				if (!action.apply(pos.set(x, y, z), face.set(
 					x + max, y, z + max,
 					x + min, y, z + max,
@@ -63,7 +68,7 @@ public class CullingCubic extends SimpleMesher {
 					return false;
 
 			// South (pos z)
-			if (!isSmoothable.test(blocks[index + width * height]))
+			if (!isOccupied(occupancy, index + width * height))
 				if (!action.apply(pos.set(x, y, z), face.set(
 					x + max, y + max, z + max,
 					x + min, y + max, z + max,
@@ -73,7 +78,7 @@ public class CullingCubic extends SimpleMesher {
 					return false;
 
 			// North (neg z)
-			if (!isSmoothable.test(blocks[index - width * height]))
+			if (!isOccupied(occupancy, index - width * height))
 				if (!action.apply(pos.set(x, y, z), face.set(
 					x + max, y + max, z + min,
 					x + max, y + min, z + min,
@@ -83,7 +88,7 @@ public class CullingCubic extends SimpleMesher {
 					return false;
 
 			// East (pos x)
-			if (!isSmoothable.test(blocks[index + 1]))
+			if (!isOccupied(occupancy, index + 1))
 				if (!action.apply(pos.set(x, y, z), face.set(
 					x + max, y + max, z + max,
 					x + max, y + min, z + max,
@@ -93,7 +98,7 @@ public class CullingCubic extends SimpleMesher {
 					return false;
 
 			// West (neg x)
-			if (!isSmoothable.test(blocks[index - 1]))
+			if (!isOccupied(occupancy, index - 1))
 				if (!action.apply(pos.set(x, y, z), face.set(
 					x + min, y + max, z + max,
 					x + min, y + max, z + min,
@@ -0,0 +1,90 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.mesh.Mesher.FaceBatchAction;
+import io.github.cadiboo.nocubes.util.Face;
+import io.github.cadiboo.nocubes.util.Vec;
+import net.minecraft.core.BlockPos.MutableBlockPos;
+
+import static io.github.cadiboo.nocubes.mesh.Mesher.FaceBatchAction.BATCH_SIZE;
+
+/**
+ * Collects faces into packed arrays and passes them to a {@link FaceBatchAction} once {@link FaceBatchAction#BATCH_SIZE} have been collected.
+ */
+final class FaceBatch {
+
+	private final float[] vertices = new float[BATCH_SIZE * 4 * 3];
+	private final int[] positions = new int[BATCH_SIZE * 3];
+	private final FaceBatchAction action;
+	private int count;
+	private boolean stopped;
+
+	FaceBatch(FaceBatchAction action) {
+		this.action = action;
+	}
+
+	/**
+	 * @return false if no more faces need to be generated
+	 */
+	boolean add(MutableBlockPos relativePos, Face face) {
+		int pointer = count * 12;
+		var vertices = this.vertices;
+		pointer = put(vertices, pointer, face.v0);
+		pointer = put(vertices, pointer, face.v1);
+		pointer = put(vertices, pointer, face.v2);
+		put(vertices, pointer, face.v3);
+		return addPosition(relativePos.getX(), relativePos.getY(), relativePos.getZ());
+	}
+
+	/**
+	 * @return false if no more faces need to be generated
+	 */
+	boolean add(IndexedMesh mesh, int quad) {
+		var meshVertices = mesh.vertices;
+		var quads = mesh.quads;
+		var vertices = this.vertices;
+		int pointer = count * 12;
+		for (int corner = 0, quadPointer = quad * 4; corner < 4; ++corner, pointer += 3) {
+			int vertexPointer = quads[quadPointer + corner] * 3;
+			vertices[pointer] = meshVertices[vertexPointer];
+			vertices[pointer + 1] = meshVertices[vertexPointer + 1];
+			vertices[pointer + 2] = meshVertices[vertexPointer + 2];
+		}
+		int positionPointer = quad * 3;
+		var quadPositions = mesh.quadPositions;
+		return addPosition(quadPositions[positionPointer], quadPositions[positionPointer + 1], quadPositions[positionPointer + 2]);
+	}
+
+	/**
+	 * Passes any remaining faces to the action.
+	 */
+	void finish() {
+		if (!stopped)
+			flush();
+	}
+
+	private boolean addPosition(int x, int y, int z) {
+		int pointer = count * 3;
+		var positions = this.positions;
+		positions[pointer] = x;
+		positions[pointer + 1] = y;
+		positions[pointer + 2] = z;
+		return ++count < BATCH_SIZE || flush();
+	}
+
+	private boolean flush() {
+		if (count == 0)
+			return true;
+		var keepGoing = action.apply(vertices, positions, count);
+		count = 0;
+		stopped = !keepGoing;
+		return keepGoing;
+	}
+
+	private static int put(float[] vertices, int pointer, Vec vertex) {
+		vertices[pointer] = vertex.x;
+		vertices[pointer + 1] = vertex.y;
+		vertices[pointer + 2] = vertex.z;
+		return pointer + 3;
+	}
+
+}
@@ -0,0 +1,128 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.util.Face;
+import io.github.cadiboo.nocubes.util.Vec;
+import net.minecraft.core.BlockPos.MutableBlockPos;
+import net.minecraft.util.Mth;
+
+import java.util.Arrays;
+
+/**
+ * A mesh where vertices that are shared between faces are only stored once.
+ * Generated by {@link SDFMesher#generateIndexedGeometry}.
+ * Lets per-vertex work (lighting, normals, colours) be done once per vertex instead of once per face corner.
+ * Reusable, call {@link #clear()} before generating a new mesh into it.
+ * All positions are relative to the start of the area the mesh was generated for.
+ */
+public final class IndexedMesh {
+
+	/** Packed (x, y, z) of each vertex. */
+	public float[] vertices = new float[3 * 256];
+	public int vertexCount;
+	/** The indices of the 4 vertices of each quad, triangles repeat their last vertex. */
+	public int[] quads = new int[4 * 256];
+	/** Packed (x, y, z) of the cell that each quad was generated for. */
+	public int[] quadPositions = new int[3 * 256];
+	public int quadCount;
+
+	public void clear() {
+		vertexCount = 0;
+		quadCount = 0;
+	}
+
+	/**
+	 * @return The index of the new vertex
+	 */
+	public int addVertex(float x, float y, float z) {
+		int index = vertexCount++;
+		int pointer = index * 3;
+		if (pointer + 3 > vertices.length)
+			vertices = Arrays.copyOf(vertices, vertices.length * 2);
+		var vertices = this.vertices;
+		vertices[pointer] = x;
+		vertices[pointer + 1] = y;
+		vertices[pointer + 2] = z;
+		return index;
+	}
+
+	public void addQuad(int x, int y, int z, int v0, int v1, int v2, int v3) {
+		int index = quadCount++;
+		int pointer = index * 4;
+		if (pointer + 4 > quads.length) {
+			quads = Arrays.copyOf(quads, quads.length * 2);
+			quadPositions = Arrays.copyOf(quadPositions, quadPositions.length * 2);
+		}
+		var quads = this.quads;
+		quads[pointer] = v0;
+		quads[pointer + 1] = v1;
+		quads[pointer + 2] = v2;
+		quads[pointer + 3] = v3;
+		var positions = this.quadPositions;
+		int positionPointer = index * 3;
+		positions[positionPointer] = x;
+		positions[positionPointer + 1] = y;
+		positions[positionPointer + 2] = z;
+	}
+
+	public Vec getVertex(int vertex, Vec toUse) {
+		int pointer = vertex * 3;
+		var vertices = this.vertices;
+		return toUse.set(vertices[pointer], vertices[pointer + 1], vertices[pointer + 2]);
+	}
+
+	public Face getFace(int quad, Face toUse) {
+		int pointer = quad * 4;
+		var quads = this.quads;
+		getVertex(quads[pointer], toUse.v0);
+		getVertex(quads[pointer + 1], toUse.v1);
+		getVertex(quads[pointer + 2], toUse.v2);
+		getVertex(quads[pointer + 3], toUse.v3);
+		return toUse;
+	}
+
+	public MutableBlockPos getQuadPosition(int quad, MutableBlockPos toUse) {
+		int pointer = quad * 3;
+		var positions = this.quadPositions;
+		return toUse.set(positions[pointer], positions[pointer + 1], positions[pointer + 2]);
+	}
+
+	/**
+	 * Computes a normal for each vertex by averaging the (outwards facing) normals of the faces that use it.
+	 * Faces are weighted by their size, so tiny slivers don't skew the result.
+	 *
+	 * @param toUse An array of at least {@code vertexCount * 3} floats
+	 * @return The array, filled with the packed (x, y, z) normals of each vertex
+	 */
+	public float[] computeVertexNormals(float[] toUse) {
+		Arrays.fill(toUse, 0, vertexCount * 3, 0);
+		var face = new Face();
+		var cornerNormals = new Face();
+		var normal = new Vec();
+		var quads = this.quads;
+		for (int quad = 0; quad < quadCount; ++quad) {
+			getFace(quad, face).assignNormalTo(cornerNormals).multiply(-1).assignAverageTo(normal);
+			int pointer = quad * 4;
+			for (int corner = 0; corner < 4; ++corner) {
+				if (corner == 3 && quads[pointer + 3] == quads[pointer + 2])
+					continue; // Triangle, don't count the repeated vertex twice
+				int vertexPointer = quads[pointer + corner] * 3;
+				toUse[vertexPointer] += normal.x;
+				toUse[vertexPointer + 1] += normal.y;
+				toUse[vertexPointer + 2] += normal.z;
+			}
+		}
+		for (int vertexPointer = 0, end = vertexCount * 3; vertexPointer < end; vertexPointer += 3) {
+			float x = toUse[vertexPointer];
+			float y = toUse[vertexPointer + 1];
+			float z = toUse[vertexPointer + 2];
+			float length = Mth.sqrt(x * x + y * y + z * z);
+			if (length < 0.0001)
+				continue;
+			toUse[vertexPointer] = x / length;
+			toUse[vertexPointer + 1] = y / length;
+			toUse[vertexPointer + 2] = z / length;
+		}
+		return toUse;
+	}
+
+}
@@ -2,15 +2,17 @@ package io.github.cadiboo.nocubes.mesh;
 
 import io.github.cadiboo.nocubes.collision.CollisionHandler;
 import io.github.cadiboo.nocubes.collision.ShapeConsumer;
+import io.github.cadiboo.nocubes.collision.ShapeMerger;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.Face;
 import io.github.cadiboo.nocubes.util.ModUtil;
+import io.github.cadiboo.nocubes.util.ThreadLocalArrayCache;
 import io.github.cadiboo.nocubes.util.Vec;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.block.state.BlockState;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 import static net.minecraft.core.BlockPos.MutableBlockPos;
@@ -20,6 +22,9 @@ import static net.minecraft.core.BlockPos.MutableBlockPos;
  */
 public class MarchingCubes extends SDFMesher {
 
+	private static final ThreadLocalArrayCache<int[]> EDGE_IDS_CACHE = new ThreadLocalArrayCache<>(int[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<float[]> EDGE_VERTICES_CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+
 	public MarchingCubes(boolean smoothness2x) {
 		super(smoothness2x);
 	}
@@ -43,16 +48,18 @@ public class MarchingCubes extends SDFMesher {
 		var vertexNormals = new Face();
 		var faceNormal = new Vec();
 		var centre = new Vec();
+		var merger = new ShapeMerger(action);
 		generateOrThrow(
 			area, isSmoothable,
-			(x, y, z) -> ShapeConsumer.acceptFullCube(x, y, z, action),
+			(x, y, z) -> ShapeConsumer.acceptFullCube(x, y, z, merger),
 			(pos, face) -> {
 				face.assignAverageTo(centre);
 				face.assignNormalTo(vertexNormals);
 				vertexNormals.assignAverageTo(faceNormal);
-				return CollisionHandler.generateShapes(centre, faceNormal, action, face);
+				return CollisionHandler.generateShapes(centre, faceNormal, merger, face);
 			}
 		);
+		merger.finish();
 	}
 
 //	@Override
@@ -120,39 +127,81 @@ public class MarchingCubes extends SDFMesher {
 		generateOrThrow(area, isSmoothable, FullCellAction.IGNORE, action);
 	}
 
+	@Override
+	protected void generateIndexedGeometryInternal(Area area, Predicate<BlockState> isSmoothable, IndexedMesh mesh) {
+		generateOrThrow(area, isSmoothable, FullCellAction.IGNORE, null, mesh);
+	}
+
 	private void generateOrThrow(Area area, Predicate<BlockState> isSmoothable, FullCellAction fullCellAction, FaceAction action) {
+		generateOrThrow(area, isSmoothable, fullCellAction, action, null);
+	}
+
+	/**
+	 * Faces are passed to the action, or if there is a mesh, added to the mesh instead.
+	 */
+	private void generateOrThrow(Area area, Predicate<BlockState> isSmoothable, FullCellAction fullCellAction, @Nullable FaceAction action, @Nullable IndexedMesh mesh) {
 		// Duplicated in SurfaceNets
 		@Nullable TestData.TestMesh testMesh = null; // TestData.SPHERE
 		var smoother = smoothness2x;
-		var distanceField = generateDistanceField(area, isSmoothable, smoother, testMesh);
 		var dims = getDimensions(area, smoother, testMesh);
 		// Because we are passing block densities instead of corner distances (see the NB comment in generateDistanceField) we need to offset the mesh
 		float offset = smoother ? 1F : 0.5F;
-		generateOrThrow2(
-			distanceField, dims,
-			(x, y, z) -> fullCellAction.apply(x + offset, y + offset, z + offset),
-			(pos, face) -> action.apply(pos, face.add(offset))
-		);
+		var uniformDistance = getUniformDistance(area, isSmoothable, testMesh);
+		if (!Float.isNaN(uniformDistance)) {
+			// Same check as the cube mask
+			if (uniformDistance > 0)
+				forEachCell(dims, offset, fullCellAction);
+			return;
+		}
+		var distanceField = generateDistanceField(area, isSmoothable, smoother, testMesh);
+		generateOrThrow2(distanceField, dims, offset, fullCellAction, action, mesh, summariseBricks(distanceField, dims));
 	}
 
-	private static void generateOrThrow2(float[] data, BlockPos dims, FullCellAction fullCellAction, FaceAction action) {
+	/**
+	 * @param bricks The summary of the distance field from {@link #summariseBricks}
+	 */
+	static void generateOrThrow2(float[] data, BlockPos dims, float offset, FullCellAction fullCellAction, @Nullable FaceAction action, @Nullable IndexedMesh mesh, float[] bricks) {
 		var pos = new MutableBlockPos();
 		var face = new Face();
 
 		var cubeVerts = Lookup.CUBE_VERTS;
 		var edgeTable = Lookup.EDGE_TABLE;
+		var edgeOrigins = Lookup.EDGE_ORIGINS;
 		var edgeIndex = Lookup.EDGE_INDEX;
 		var triTable = Lookup.TRI_TABLE;
 
 		int n = 0;
 		var grid = new float[8];
 		var edges = new int[12];
-		var vertices = new ArrayList<Vec>();
+
+		// Neighbouring cells share edges, so each edge's vertex is cached and reused instead of being recomputed by every cell that touches it
+		// An edge is identified by the corner it starts at (its lowest coordinates) and the axis it points along
+		// A cell only touches edges that start on its own z slice or the next one, so (like SurfaceNets' verticesBuffer)
+		// only two slices are stored and the one that is no longer needed gets reused for the next slice
+		int sliceLength = dims.getX() * dims.getY() * 3;
+		// Contains 0 if the edge's vertex hasn't been computed yet, otherwise its index in the mesh + 1 (or just 1 if there is no mesh)
+		var edgeIds = EDGE_IDS_CACHE.takeArray(sliceLength * 2);
+		// Contains the (x, y, z) of each edge's vertex, only used if there is no mesh
+		var edgeVertices = mesh != null ? null : EDGE_VERTICES_CACHE.takeArray(sliceLength * 2 * 3);
+		Arrays.fill(edgeIds, 0, sliceLength * 2, 0);
+		var ignoreFullCells = fullCellAction == FullCellAction.IGNORE;
 
 		//March over the volume
 		for (int z = 0; z < dims.getZ() - 1; ++z, n += dims.getX()) {
+			// Forget the edges of the slice behind this one, its space is used for the one in front of this one
+			int nextSliceStart = ((z + 1) & 1) * sliceLength;
+			Arrays.fill(edgeIds, nextSliceStart, nextSliceStart + sliceLength, 0);
 			for (int y = 0; y < dims.getY() - 1; ++y, ++n) {
 				for (int x = 0; x < dims.getX() - 1; ++x, ++n) {
+					int brick = brickIndex(x, y, z, dims);
+					// Same check as the cube mask (values above 0 are inside)
+					if (bricks[brick + 1] <= 0 || (ignoreFullCells && bricks[brick] > 0)) {
+						// The surface doesn't pass through any cell in this brick, so none of them have faces
+						int skip = cellsLeftInBrick(x, dims);
+						x += skip;
+						n += skip;
+						continue;
+					}
 					//For each cell, compute cube mask
 					short cube_index = 0;
 					for (byte i = 0; i < 8; ++i) {
@@ -162,7 +211,7 @@ public class MarchingCubes extends SDFMesher {
 						cube_index |= (s > 0) ? 1 << i : 0;
 					}
 
-					if (cube_index == MASK_FULLY_INSIDE_ISOSURFACE && !fullCellAction.apply(x, y, z))
+					if (cube_index == MASK_FULLY_INSIDE_ISOSURFACE && !fullCellAction.apply(x + offset, y + offset, z + offset))
 						return;
 
 					//Compute vertices
@@ -173,7 +222,14 @@ public class MarchingCubes extends SDFMesher {
 					for (byte i = 0; i < 12; ++i) {
 						if ((edge_mask & (1 << i)) == 0)
 							continue;
-						edges[i] = vertices.size();
+
+						var origin = edgeOrigins[i];
+						int edgeZ = z + origin[2];
+						int slot = ((((edgeZ & 1) * dims.getY()) + y + origin[1]) * dims.getX() + x + origin[0]) * 3 + origin[3];
+						if (edgeIds[slot] != 0) {
+							edges[i] = mesh != null ? edgeIds[slot] - 1 : slot;
+							continue;
+						}
 
 						var e = edgeIndex[i];
 						var p0 = cubeVerts[e[0]];
@@ -184,20 +240,36 @@ public class MarchingCubes extends SDFMesher {
 						float t = 0;
 						if (Math.abs(d) > 1e-6)
 							t = a / d;
-						vertices.add(new Vec(
-							(x + p0[0]) + t * (p1[0] - p0[0]),
-							(y + p0[1]) + t * (p1[1] - p0[1]),
-							(z + p0[2]) + t * (p1[2] - p0[2])
-						));
+						var vertexX = (x + p0[0]) + t * (p1[0] - p0[0]);
+						var vertexY = (y + p0[1]) + t * (p1[1] - p0[1]);
+						var vertexZ = (z + p0[2]) + t * (p1[2] - p0[2]);
+						if (mesh != null) {
+							int vertex = mesh.addVertex(vertexX + offset, vertexY + offset, vertexZ + offset);
+							edgeIds[slot] = vertex + 1;
+							edges[i] = vertex;
+							continue;
+						}
+						int vertexPointer = slot * 3;
+						edgeVertices[vertexPointer] = vertexX;
+						edgeVertices[vertexPointer + 1] = vertexY;
+						edgeVertices[vertexPointer + 2] = vertexZ;
+						edgeIds[slot] = 1;
+						edges[i] = slot;
 					}
 
 					//Add faces
 					var f = triTable[cube_index];
 					for (byte i = 0; i < f.length; i += 3) {
-						face.v0.set(vertices.get(edges[f[i + 0]]));
-						face.v1.set(vertices.get(edges[f[i + 1]]));
-						face.v2.set(vertices.get(edges[f[i + 2]]));
+						if (mesh != null) {
+							// Triangles are stored as quads with a repeated last vertex
+							mesh.addQuad(x, y, z, edges[f[i + 0]], edges[f[i + 1]], edges[f[i + 2]], edges[f[i + 2]]);
+							continue;
+						}
+						setVertex(face.v0, edgeVertices, edges[f[i + 0]]);
+						setVertex(face.v1, edgeVertices, edges[f[i + 1]]);
+						setVertex(face.v2, edgeVertices, edges[f[i + 2]]);
 						face.v3.set(face.v2);
+						face.add(offset);
 						if (!action.apply(pos.set(x, y, z), face))
 							return;
 					}
@@ -206,8 +278,12 @@ public class MarchingCubes extends SDFMesher {
 		}
 	}
 
+	private static void setVertex(Vec vertex, float[] edgeVertices, int slot) {
+		int pointer = slot * 3;
+		vertex.set(edgeVertices[pointer], edgeVertices[pointer + 1], edgeVertices[pointer + 2]);
+	}
 
-	private interface Lookup {
+	interface Lookup {
 
 		byte[][] EDGE_INDEX = {
 			{0, 1},
@@ -224,6 +300,25 @@ public class MarchingCubes extends SDFMesher {
 			{3, 7}
 		};
 
+		/**
+		 * The offset of the corner each edge starts at (the one with the lowest coordinates) and the axis it points along.
+		 * E.g. {0, 1, 0, 0} is the edge going along the x axis from (0, 1, 0).
+		 */
+		byte[][] EDGE_ORIGINS = {
+			{0, 0, 0, 0},
+			{1, 0, 0, 1},
+			{0, 1, 0, 0},
+			{0, 0, 0, 1},
+			{0, 0, 1, 0},
+			{1, 0, 1, 1},
+			{0, 1, 1, 0},
+			{0, 0, 1, 1},
+			{0, 0, 0, 2},
+			{1, 0, 0, 2},
+			{1, 1, 0, 2},
+			{0, 1, 0, 2}
+		};
+
 		byte[][] CUBE_VERTS = {
 			{0, 0, 0},
 			{1, 0, 0},
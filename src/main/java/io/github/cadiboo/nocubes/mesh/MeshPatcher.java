@@ -0,0 +1,221 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+
+import java.util.Arrays;
+
+/**
+ * Updates the mesh of a section when only a few of its blocks have changed (e.g. when a cached mesh is out of date).
+ * Copies the faces that can't have been affected by the changed blocks from the old mesh and regenerates the rest
+ * by meshing a small area around the change.
+ * Also used to copy the mesh of a section out of the mesh of the column of sections it was meshed with.
+ */
+public final class MeshPatcher {
+
+	/**
+	 * If more blocks than this (along any axis) change, the whole mesh is regenerated instead of being patched.
+	 */
+	private static final int MAX_PATCH_SIZE = 4;
+	/**
+	 * How far away from a changed block the faces that it affects can be (faces use the vertices of the cells around them).
+	 */
+	private static final int PATCH_REACH = 2;
+	/**
+	 * How much extra is meshed around a patch so that the faces in it are the same as they would be in a full mesh.
+	 */
+	private static final int PATCH_MARGIN = 3;
+
+	/**
+	 * Meshes part of the area, e.g. by calling {@link SDFMesher#generateIndexedGeometry} with a
+	 * {@link io.github.cadiboo.nocubes.util.Area#copyOfRange copy} of it.
+	 */
+	public interface RangeMesher {
+		/**
+		 * @param relativeStart Where the part starts, relative to the start of the area
+		 * @param mesh          The mesh to add the faces to, relative to the start of the part
+		 */
+		void generate(BlockPos relativeStart, BlockPos size, IndexedMesh mesh);
+	}
+
+	public static boolean isSmallEnoughToPatch(int[] changed) {
+		for (int axis = 0; axis < 3; ++axis)
+			if (changed[axis + 3] - changed[axis] >= MAX_PATCH_SIZE)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Vertices on the border of the patch are welded to the old ones so that normals (and therefore lighting) stay smooth.
+	 *
+	 * @param areaSize The size of the area that both meshes are for
+	 * @param changed  The box (min x, y, z then max x, y, z, all inclusive) that contains all the blocks that changed
+	 * @param patched  The mesh to add the faces to
+	 * @return The quad in the old mesh that each quad was copied from, or -1 if it is new (or its state needs to be found again)
+	 */
+	public static int[] patch(IndexedMesh old, BlockPos areaSize, int[] changed, RangeMesher mesher, IndexedMesh patched) {
+		int[] sizes = {areaSize.getX(), areaSize.getY(), areaSize.getZ()};
+		// The faces in here get regenerated
+		var dirty = new int[6];
+		var subStart = new int[3];
+		var subSize = new int[3];
+		for (int axis = 0; axis < 3; ++axis) {
+			dirty[axis] = Math.max(changed[axis] - PATCH_REACH, 0);
+			dirty[axis + 3] = Math.min(changed[axis + 3] + PATCH_REACH, sizes[axis] - 1);
+			// Clamping to the edges of the area is fine, the faces there are generated the same way as in the full mesh
+			subStart[axis] = Math.max(dirty[axis] - PATCH_MARGIN, 0);
+			subSize[axis] = Math.min(dirty[axis + 3] + PATCH_MARGIN, sizes[axis] - 1) - subStart[axis] + 1;
+		}
+		var sub = new IndexedMesh();
+		mesher.generate(new BlockPos(subStart[0], subStart[1], subStart[2]), new BlockPos(subSize[0], subSize[1], subSize[2]), sub);
+
+		var sources = new int[old.quadCount + sub.quadCount];
+		// The vertices of the old faces next to the patch, by their position
+		var welded = new Long2IntOpenHashMap();
+		welded.defaultReturnValue(-1);
+		var vertices = new int[4];
+		var pos = new BlockPos.MutableBlockPos();
+
+		var oldVertices = new int[old.vertexCount];
+		Arrays.fill(oldVertices, -1);
+		for (int quad = 0; quad < old.quadCount; ++quad) {
+			old.getQuadPosition(quad, pos);
+			if (isInside(dirty, pos, 0))
+				continue;
+			var nearPatch = isInside(dirty, pos, PATCH_REACH);
+			for (int corner = 0; corner < 4; ++corner) {
+				int vertex = old.quads[quad * 4 + corner];
+				int copied = oldVertices[vertex];
+				if (copied == -1) {
+					int pointer = vertex * 3;
+					float x = old.vertices[pointer], y = old.vertices[pointer + 1], z = old.vertices[pointer + 2];
+					copied = oldVertices[vertex] = patched.addVertex(x, y, z);
+					if (nearPatch)
+						welded.put(weldKey(x, y, z), copied);
+				}
+				vertices[corner] = copied;
+			}
+			patched.addQuad(pos.getX(), pos.getY(), pos.getZ(), vertices[0], vertices[1], vertices[2], vertices[3]);
+			// The states of faces next to the change might be different too
+			sources[patched.quadCount - 1] = isInside(dirty, pos, 1) ? -1 : quad;
+		}
+
+		var subVertices = new int[sub.vertexCount];
+		Arrays.fill(subVertices, -1);
+		for (int quad = 0; quad < sub.quadCount; ++quad) {
+			sub.getQuadPosition(quad, pos).move(subStart[0], subStart[1], subStart[2]);
+			if (!isInside(dirty, pos, 0))
+				continue;
+			for (int corner = 0; corner < 4; ++corner) {
+				int vertex = sub.quads[quad * 4 + corner];
+				int copied = subVertices[vertex];
+				if (copied == -1) {
+					int pointer = vertex * 3;
+					float x = sub.vertices[pointer] + subStart[0], y = sub.vertices[pointer + 1] + subStart[1], z = sub.vertices[pointer + 2] + subStart[2];
+					// The patch's own vertices are already shared, only the ones on its border need to be welded to the old ones
+					copied = welded.get(weldKey(x, y, z));
+					if (copied == -1)
+						copied = patched.addVertex(x, y, z);
+					subVertices[vertex] = copied;
+				}
+				vertices[corner] = copied;
+			}
+			patched.addQuad(pos.getX(), pos.getY(), pos.getZ(), vertices[0], vertices[1], vertices[2], vertices[3]);
+			sources[patched.quadCount - 1] = -1;
+		}
+		return sources;
+	}
+
+	/**
+	 * Copies the mesh of a section out of the mesh of a column of sections that its area is part of.
+	 * In the column, the faces in the bottom layer of the section's cells can also use the vertices of the cells below it,
+	 * which meshing the section on its own can't, so they are regenerated from a thin slab at the bottom of its area.
+	 *
+	 * @param offsetY  Where the section's area starts, relative to the start of the column's area
+	 * @param sizeY    How many layers of cells the faces of the section are in
+	 * @param areaSize The size of the section's area
+	 * @param mesher   Meshes part of the section's area
+	 * @param section  The mesh to add the faces to, relative to the start of the section's area
+	 */
+	public static void extractSection(IndexedMesh column, int offsetY, int sizeY, BlockPos areaSize, RangeMesher mesher, IndexedMesh section) {
+		var vertices = new int[4];
+		var pos = new BlockPos.MutableBlockPos();
+		// The first quad in the second layer of each column of cells, indexed [z][x]
+		var firstQuadsAbove = new int[areaSize.getX() * areaSize.getZ()];
+		Arrays.fill(firstQuadsAbove, -1);
+
+		var columnVertices = new int[column.vertexCount];
+		Arrays.fill(columnVertices, -1);
+		for (int quad = 0; quad < column.quadCount; ++quad) {
+			column.getQuadPosition(quad, pos).move(0, -offsetY, 0);
+			if (pos.getY() < 1 || pos.getY() >= sizeY)
+				continue;
+			for (int corner = 0; corner < 4; ++corner) {
+				int vertex = column.quads[quad * 4 + corner];
+				int copied = columnVertices[vertex];
+				if (copied == -1) {
+					int pointer = vertex * 3;
+					copied = columnVertices[vertex] = section.addVertex(column.vertices[pointer], column.vertices[pointer + 1] - offsetY, column.vertices[pointer + 2]);
+				}
+				vertices[corner] = copied;
+			}
+			int cell = pos.getX() + pos.getZ() * areaSize.getX();
+			if (pos.getY() == 1 && firstQuadsAbove[cell] == -1)
+				firstQuadsAbove[cell] = section.quadCount;
+			section.addQuad(pos.getX(), pos.getY(), pos.getZ(), vertices[0], vertices[1], vertices[2], vertices[3]);
+		}
+
+		var slab = new IndexedMesh();
+		mesher.generate(BlockPos.ZERO, new BlockPos(areaSize.getX(), Math.min(2 + PATCH_MARGIN, areaSize.getY()), areaSize.getZ()), slab);
+		var slabVertices = new int[slab.vertexCount];
+		Arrays.fill(slabVertices, -1);
+		// The second layer of the slab is the same as the one copied from the column, and its quads are generated in the
+		// same order, so the vertices that the bottom layer shares with it can be matched up exactly
+		// (welding by position would merge vertices that are in the same place but that a mesher keeps separate)
+		int previousCell = -1;
+		int quadInCell = 0;
+		for (int quad = 0; quad < slab.quadCount; ++quad) {
+			slab.getQuadPosition(quad, pos);
+			if (pos.getY() != 1)
+				continue;
+			int cell = pos.getX() + pos.getZ() * areaSize.getX();
+			quadInCell = cell == previousCell ? quadInCell + 1 : 0;
+			previousCell = cell;
+			if (firstQuadsAbove[cell] == -1)
+				continue;
+			int copied = firstQuadsAbove[cell] + quadInCell;
+			for (int corner = 0; corner < 4; ++corner)
+				slabVertices[slab.quads[quad * 4 + corner]] = section.quads[copied * 4 + corner];
+		}
+		for (int quad = 0; quad < slab.quadCount; ++quad) {
+			slab.getQuadPosition(quad, pos);
+			if (pos.getY() != 0)
+				continue;
+			for (int corner = 0; corner < 4; ++corner) {
+				int vertex = slab.quads[quad * 4 + corner];
+				int copied = slabVertices[vertex];
+				if (copied == -1) {
+					int pointer = vertex * 3;
+					copied = slabVertices[vertex] = section.addVertex(slab.vertices[pointer], slab.vertices[pointer + 1], slab.vertices[pointer + 2]);
+				}
+				vertices[corner] = copied;
+			}
+			section.addQuad(pos.getX(), pos.getY(), pos.getZ(), vertices[0], vertices[1], vertices[2], vertices[3]);
+		}
+	}
+
+	private static boolean isInside(int[] box, BlockPos pos, int expansion) {
+		return pos.getX() >= box[0] - expansion && pos.getX() <= box[3] + expansion &&
+			pos.getY() >= box[1] - expansion && pos.getY() <= box[4] + expansion &&
+			pos.getZ() >= box[2] - expansion && pos.getZ() <= box[5] + expansion;
+	}
+
+	/**
+	 * Vertices from the patch are generated relative to a different start so can be off by a rounding error.
+	 */
+	private static long weldKey(float x, float y, float z) {
+		long mask = (1 << 21) - 1;
+		return (Math.round(x * 1024) & mask) << 42 | (Math.round(y * 1024) & mask) << 21 | (Math.round(z * 1024) & mask);
+	}
+
+}
@@ -4,8 +4,10 @@ import com.mojang.blaze3d.vertex.PoseStack;
 import io.github.cadiboo.nocubes.collision.ShapeConsumer;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.Face;
+import io.github.cadiboo.nocubes.util.Vec;
 import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
 import net.minecraft.core.Vec3i;
 import net.minecraft.world.level.block.state.BlockState;
 
@@ -33,8 +35,113 @@ public interface Mesher {
 		}
 	}
 
+	/**
+	 * Like {@link #generateGeometry} but hands out faces in batches of packed primitives instead of one {@link Face} at a time.
+	 * Lets consumers process the mesh in tight loops over arrays.
+	 */
+	default void generateGeometryBatched(Area area, Predicate<BlockState> isSmoothable, FaceBatchAction action) {
+		try {
+			generateGeometryBatchedInternal(area, isSmoothable, action);
+		} catch (Throwable t) {
+			Util.pauseInIde(t);
+			throw t;
+		}
+	}
+
+	/**
+	 * Like {@link #generateGeometry} but neighbouring faces that point the same way, are for the same state and have the
+	 * same key can be merged into one bigger face.
+	 * Only chunk rendering (with {@link io.github.cadiboo.nocubes.config.NoCubesConfig.Client#greedyCubicMeshing}) uses
+	 * this, everything else needs a face for each block.
+	 * Renderers split merged faces back up with {@link #forEachBlockFace} so that textures aren't stretched across them.
+	 */
+	default void generateGeometryMerged(Area area, Predicate<BlockState> isSmoothable, FaceMergeKey mergeKey, FaceAction action) {
+		try {
+			generateGeometryMergedInternal(area, isSmoothable, mergeKey, action);
+		} catch (Throwable t) {
+			Util.pauseInIde(t);
+			throw t;
+		}
+	}
+
+	/**
+	 * Splits a face from {@link #generateGeometryMerged} back up into a face for each block that it covers.
+	 * The faces are the same (and have the same winding) as the ones {@link #generateGeometry} generates.
+	 * Used to render merged faces, because a texture from the block atlas can't be repeated across a bigger face.
+	 * Faces that aren't rectangles on the block grid (from meshers that don't merge faces) are passed on as they are.
+	 *
+	 * @param relativePos The position of the merged face
+	 * @param blockPos    Reused for the position of each block's face
+	 * @param blockFace   Reused for each block's face
+	 * @return false if the action returned false
+	 */
+	static boolean forEachBlockFace(MutableBlockPos relativePos, Face face, MutableBlockPos blockPos, Face blockFace, FaceAction action) {
+		var vertices = new Vec[]{face.v0, face.v1, face.v2, face.v3};
+		float minX = vertices[0].x, minY = vertices[0].y, minZ = vertices[0].z;
+		float maxX = minX, maxY = minY, maxZ = minZ;
+		for (var vertex : vertices) {
+			minX = Math.min(minX, vertex.x);
+			minY = Math.min(minY, vertex.y);
+			minZ = Math.min(minZ, vertex.z);
+			maxX = Math.max(maxX, vertex.x);
+			maxY = Math.max(maxY, vertex.y);
+			maxZ = Math.max(maxZ, vertex.z);
+			if (vertex.x != (int) vertex.x || vertex.y != (int) vertex.y || vertex.z != (int) vertex.z)
+				return action.apply(relativePos, face);
+		}
+		int flatAxes = (minX == maxX ? 1 : 0) + (minY == maxY ? 1 : 0) + (minZ == maxZ ? 1 : 0);
+		if (flatAxes != 1)
+			return action.apply(relativePos, face);
+		var blockVertices = new Vec[]{blockFace.v0, blockFace.v1, blockFace.v2, blockFace.v3};
+		// The flat axis only has one layer of blocks
+		for (int z = (int) minZ; z < Math.max(maxZ, minZ + 1); ++z) {
+			for (int y = (int) minY; y < Math.max(maxY, minY + 1); ++y) {
+				for (int x = (int) minX; x < Math.max(maxX, minX + 1); ++x) {
+					for (int i = 0; i < 4; ++i) {
+						var vertex = vertices[i];
+						blockVertices[i].set(
+							getBlockCorner(vertex.x, minX, maxX, x),
+							getBlockCorner(vertex.y, minY, maxY, y),
+							getBlockCorner(vertex.z, minZ, maxZ, z)
+						);
+					}
+					blockPos.set(
+						minX == maxX ? relativePos.getX() : x,
+						minY == maxY ? relativePos.getY() : y,
+						minZ == maxZ ? relativePos.getZ() : z
+					);
+					if (!action.apply(blockPos, blockFace))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static float getBlockCorner(float coordinate, float min, float max, int block) {
+		if (min == max)
+			return coordinate;
+		return coordinate == max ? block + 1 : block;
+	}
+
 	void generateGeometryInternal(Area area, Predicate<BlockState> isSmoothable, FaceAction action);
 
+	/**
+	 * Meshers that can merge faces should override this, the others generate the same faces as {@link #generateGeometry}.
+	 */
+	default void generateGeometryMergedInternal(Area area, Predicate<BlockState> isSmoothable, FaceMergeKey mergeKey, FaceAction action) {
+		generateGeometryInternal(area, isSmoothable, action);
+	}
+
+	/**
+	 * Meshers that can generate packed geometry directly should override this to skip creating a {@link Face} for each face.
+	 */
+	default void generateGeometryBatchedInternal(Area area, Predicate<BlockState> isSmoothable, FaceBatchAction action) {
+		var batch = new FaceBatch(action);
+		generateGeometryInternal(area, isSmoothable, batch::add);
+		batch.finish();
+	}
+
 	void generateCollisionsInternal(Area area, Predicate<BlockState> isSmoothable, ShapeConsumer action);
 
 	Vec3i getPositiveAreaExtension();
@@ -52,6 +159,38 @@ public interface Mesher {
 
 	}
 
+	interface FaceMergeKey {
+
+		/**
+		 * Faces are only merged with faces that have the same key, so it should include everything (like light) that
+		 * would make the faces look different.
+		 *
+		 * @param relativePos The position of the block that the face is on, positioned relatively to the start of the area
+		 * @param direction   The way the face points
+		 */
+		long get(BlockState state, MutableBlockPos relativePos, Direction direction);
+
+	}
+
+	interface FaceBatchAction {
+
+		/**
+		 * The maximum number of faces in a batch.
+		 */
+		int BATCH_SIZE = 256;
+
+		/**
+		 * The arrays are reused for the next batch, copy anything that needs to be kept.
+		 *
+		 * @param vertices  The packed (x, y, z) of the 4 vertices of each face, positioned relatively to the start of the area
+		 * @param positions The packed (x, y, z) of the position of each face, positioned relatively to the start of the area
+		 * @param count     The number of faces in this batch, the arrays may be longer
+		 * @return false if no more faces need to be generated
+		 */
+		boolean apply(float[] vertices, int[] positions, int count);
+
+	}
+
 	/* protected */
 	default boolean isOutsideMesh(int x, int y, int z, BlockPos size) {
 		var negativeExtension = getNegativeAreaExtension();
@@ -0,0 +1,249 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.collision.ShapeConsumer;
+import io.github.cadiboo.nocubes.util.Area;
+import io.github.cadiboo.nocubes.util.Face;
+import net.minecraft.core.Vec3i;
+import net.minecraft.world.level.block.state.BlockState;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+import static net.minecraft.core.BlockPos.MutableBlockPos;
+
+/**
+ * Meshes large areas on multiple threads by splitting them along the Z axis into slabs.
+ * Each slab overlaps its neighbours by the mesher's area extensions, the same way that neighbouring chunks do.
+ * Meshers also output the faces in the extensions, so the faces where neighbouring slabs overlap would be output twice.
+ * Each slab only keeps the faces up to the middle of the overlap with the next slab, where both slabs have all the
+ * blocks around the faces so generate them the same way (the outsides of the first and last slabs are kept as they are).
+ * The slabs are meshed on a {@link ForkJoinPool} and their output is passed to the action on the calling thread,
+ * slab by slab, so the output is in the same order every time (and the action doesn't need to be thread-safe).
+ * Areas that are too small to be worth splitting are meshed directly on the calling thread.
+ */
+public final class ParallelMesher implements Mesher {
+
+	/** The smallest number of blocks (along Z) each slab will mesh. */
+	public static final int MIN_SLAB_SIZE = 8;
+
+	private final Mesher mesher;
+	private final ForkJoinPool pool;
+
+	public ParallelMesher(Mesher mesher) {
+		this(mesher, ForkJoinPool.commonPool());
+	}
+
+	public ParallelMesher(Mesher mesher, ForkJoinPool pool) {
+		this.mesher = mesher;
+		this.pool = pool;
+	}
+
+	public boolean wraps(Mesher mesher) {
+		return this.mesher == mesher;
+	}
+
+	@Override
+	public void generateGeometryInternal(Area area, Predicate<BlockState> isSmoothable, FaceAction action) {
+		var slabStarts = getSlabStarts(area);
+		if (slabStarts == null) {
+			mesher.generateGeometryInternal(area, isSmoothable, action);
+			return;
+		}
+		var tasks = new ForkJoinTask<?>[slabStarts.length - 1];
+		// Relative to the start of the slab (which is also where the previous slab's overlap with it starts)
+		int middleOfOverlap = (getNegativeAreaExtension().getZ() + getPositiveAreaExtension().getZ()) / 2;
+		for (int i = 0; i < tasks.length; ++i) {
+			var slab = createSlab(area, slabStarts[i], slabStarts[i + 1]);
+			int minZ = i == 0 ? Integer.MIN_VALUE : middleOfOverlap;
+			int maxZ = i == tasks.length - 1 ? Integer.MAX_VALUE : middleOfOverlap + slabStarts[i + 1] - slabStarts[i];
+			tasks[i] = pool.submit(() -> {
+				var buffer = new FaceBuffer(minZ, maxZ);
+				mesher.generateGeometryInternal(slab, isSmoothable, buffer);
+				return buffer;
+			});
+		}
+		var pos = new MutableBlockPos();
+		var face = new Face();
+		for (int i = 0; i < tasks.length; ++i) {
+			var buffer = (FaceBuffer) tasks[i].join();
+			if (!buffer.replay(slabStarts[i], pos, face, action)) {
+				cancel(tasks, i + 1);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void generateCollisionsInternal(Area area, Predicate<BlockState> isSmoothable, ShapeConsumer action) {
+		var slabStarts = getSlabStarts(area);
+		if (slabStarts == null) {
+			mesher.generateCollisionsInternal(area, isSmoothable, action);
+			return;
+		}
+		var tasks = new ForkJoinTask<?>[slabStarts.length - 1];
+		for (int i = 0; i < tasks.length; ++i) {
+			var slab = createSlab(area, slabStarts[i], slabStarts[i + 1]);
+			tasks[i] = pool.submit(() -> {
+				var buffer = new ShapeBuffer();
+				mesher.generateCollisionsInternal(slab, isSmoothable, buffer);
+				return buffer;
+			});
+		}
+		for (int i = 0; i < tasks.length; ++i) {
+			var buffer = (ShapeBuffer) tasks[i].join();
+			if (!buffer.replay(slabStarts[i], action)) {
+				cancel(tasks, i + 1);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public Vec3i getPositiveAreaExtension() {
+		return mesher.getPositiveAreaExtension();
+	}
+
+	@Override
+	public Vec3i getNegativeAreaExtension() {
+		return mesher.getNegativeAreaExtension();
+	}
+
+	/**
+	 * @return Where each slab starts (relative to the start of the mesh, not the area) followed by where the last one ends, or null if the area isn't worth splitting
+	 */
+	private @Nullable int[] getSlabStarts(Area area) {
+		int meshSizeZ = area.size.getZ() - getNegativeAreaExtension().getZ() - getPositiveAreaExtension().getZ();
+		int slabs = Math.min(pool.getParallelism(), meshSizeZ / MIN_SLAB_SIZE);
+		if (slabs < 2 || area.getUniformState() != null)
+			return null;
+		var starts = new int[slabs + 1];
+		for (int i = 0; i <= slabs; ++i)
+			starts[i] = meshSizeZ * i / slabs;
+		return starts;
+	}
+
+	private Area createSlab(Area area, int meshStartZ, int meshEndZ) {
+		int sizeZ = meshEndZ - meshStartZ + getNegativeAreaExtension().getZ() + getPositiveAreaExtension().getZ();
+		// The slab's extension starts at meshStartZ because the area's extension starts at 0
+		return area.copyOfZRange(meshStartZ, sizeZ);
+	}
+
+	private static void cancel(ForkJoinTask<?>[] tasks, int from) {
+		for (int i = from; i < tasks.length; ++i)
+			tasks[i].cancel(false);
+	}
+
+	/**
+	 * Stores the faces of a slab so that they can be passed on to the real action later.
+	 */
+	static final class FaceBuffer implements FaceAction {
+		private final int minZ;
+		private final int maxZ;
+		int[] positions = new int[3 * 64];
+		float[] vertices = new float[12 * 64];
+		int size;
+
+		/**
+		 * @param minZ The position (inclusive) of the first faces to keep, the other slabs output the ones before it
+		 * @param maxZ The position (exclusive) of the last faces to keep
+		 */
+		FaceBuffer(int minZ, int maxZ) {
+			this.minZ = minZ;
+			this.maxZ = maxZ;
+		}
+
+		@Override
+		public boolean apply(MutableBlockPos relativePos, Face face) {
+			if (relativePos.getZ() < minZ || relativePos.getZ() >= maxZ)
+				return true;
+			if (size * 3 == positions.length) {
+				positions = Arrays.copyOf(positions, positions.length * 2);
+				vertices = Arrays.copyOf(vertices, vertices.length * 2);
+			}
+			int positionPointer = size * 3;
+			positions[positionPointer] = relativePos.getX();
+			positions[positionPointer + 1] = relativePos.getY();
+			positions[positionPointer + 2] = relativePos.getZ();
+			int vertexPointer = size * 12;
+			var vertices = this.vertices;
+			vertexPointer = put(vertices, vertexPointer, face.v0.x, face.v0.y, face.v0.z);
+			vertexPointer = put(vertices, vertexPointer, face.v1.x, face.v1.y, face.v1.z);
+			vertexPointer = put(vertices, vertexPointer, face.v2.x, face.v2.y, face.v2.z);
+			put(vertices, vertexPointer, face.v3.x, face.v3.y, face.v3.z);
+			++size;
+			return true;
+		}
+
+		private static int put(float[] array, int pointer, float x, float y, float z) {
+			array[pointer] = x;
+			array[pointer + 1] = y;
+			array[pointer + 2] = z;
+			return pointer + 3;
+		}
+
+		/**
+		 * @param offsetZ Where the slab starts, relative to the start of the whole area
+		 * @return false if the action didn't want any more faces
+		 */
+		boolean replay(int offsetZ, MutableBlockPos pos, Face face, FaceAction action) {
+			var positions = this.positions;
+			var vertices = this.vertices;
+			for (int i = 0; i < size; ++i) {
+				int p = i * 3;
+				int v = i * 12;
+				pos.set(positions[p], positions[p + 1], positions[p + 2] + offsetZ);
+				face.set(
+					vertices[v], vertices[v + 1], vertices[v + 2] + offsetZ,
+					vertices[v + 3], vertices[v + 4], vertices[v + 5] + offsetZ,
+					vertices[v + 6], vertices[v + 7], vertices[v + 8] + offsetZ,
+					vertices[v + 9], vertices[v + 10], vertices[v + 11] + offsetZ
+				);
+				if (!action.apply(pos, face))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Stores the shapes of a slab so that they can be passed on to the real consumer later.
+	 */
+	static final class ShapeBuffer implements ShapeConsumer {
+		double[] shapes = new double[6 * 64];
+		int size;
+
+		@Override
+		public boolean accept(double x0, double y0, double z0, double x1, double y1, double z1) {
+			int pointer = size * 6;
+			if (pointer == shapes.length)
+				shapes = Arrays.copyOf(shapes, shapes.length * 2);
+			var shapes = this.shapes;
+			shapes[pointer] = x0;
+			shapes[pointer + 1] = y0;
+			shapes[pointer + 2] = z0;
+			shapes[pointer + 3] = x1;
+			shapes[pointer + 4] = y1;
+			shapes[pointer + 5] = z1;
+			++size;
+			return true;
+		}
+
+		/**
+		 * @param offsetZ Where the slab starts, relative to the start of the whole area
+		 * @return false if the consumer didn't want any more shapes
+		 */
+		boolean replay(int offsetZ, ShapeConsumer consumer) {
+			var shapes = this.shapes;
+			for (int i = 0; i < size; ++i) {
+				int p = i * 6;
+				if (!consumer.accept(shapes[p], shapes[p + 1], shapes[p + 2] + offsetZ, shapes[p + 3], shapes[p + 4], shapes[p + 5] + offsetZ))
+					return false;
+			}
+			return true;
+		}
+	}
+
+}
@@ -4,8 +4,11 @@ import io.github.cadiboo.nocubes.mesh.TestData.TestMesh;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.ModUtil;
 import io.github.cadiboo.nocubes.util.ThreadLocalArrayCache;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.block.state.BlockState;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nullable;
 import java.util.function.Predicate;
@@ -13,12 +16,27 @@ import java.util.function.Predicate;
 /**
  * SDF stands for Signed Distance Field.
  */
-abstract class SDFMesher implements Mesher {
+public abstract class SDFMesher implements Mesher {
+
+	private static final Logger LOG = LogManager.getLogger();
 
 	// These two really belong to MarchingCubes and SurfaceNets but are here for convenience
 	public static final short MASK_FULLY_OUTSIDE_ISOSURFACE = 0b0000_0000;
 	public static final short MASK_FULLY_INSIDE_ISOSURFACE = 0b1111_1111;
 	private static final ThreadLocalArrayCache<float[]> CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<float[]> DENSITIES_CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<float[]> BRICKS_CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+	private static final ThreadLocal<IndexedMesh> BATCH_MESH = ThreadLocal.withInitial(IndexedMesh::new);
+	/**
+	 * The number of cells along each axis of a brick, see {@link #summariseBricks}.
+	 */
+	protected static final int BRICK_SIZE = 4;
+
+	/**
+	 * If distance fields are generated with the Vector API (which uses SIMD instructions).
+	 * Opt-in because the API is still incubating in Java 17, launch the game with '--add-modules=jdk.incubator.vector' to enable it.
+	 */
+	static final boolean VECTORISED = isVectorApiAvailable();
 
 	protected final boolean smoothness2x;
 
@@ -26,6 +44,37 @@ abstract class SDFMesher implements Mesher {
 		this.smoothness2x = smoothness2x;
 	}
 
+	/**
+	 * Like {@link #generateGeometry} but vertices that are shared between faces are only output once.
+	 *
+	 * @param mesh The mesh to add the vertices and faces to, it is not cleared beforehand
+	 */
+	public void generateIndexedGeometry(Area area, Predicate<BlockState> isSmoothable, IndexedMesh mesh) {
+		try {
+			generateIndexedGeometryInternal(area, isSmoothable, mesh);
+		} catch (Throwable t) {
+			Util.pauseInIde(t);
+			throw t;
+		}
+	}
+
+	protected abstract void generateIndexedGeometryInternal(Area area, Predicate<BlockState> isSmoothable, IndexedMesh mesh);
+
+	/**
+	 * Generates an indexed mesh and copies its quads straight into the batches, no {@link io.github.cadiboo.nocubes.util.Face}s are created.
+	 */
+	@Override
+	public void generateGeometryBatchedInternal(Area area, Predicate<BlockState> isSmoothable, FaceBatchAction action) {
+		var mesh = BATCH_MESH.get();
+		mesh.clear();
+		generateIndexedGeometryInternal(area, isSmoothable, mesh);
+		var batch = new FaceBatch(action);
+		for (int quad = 0, quadCount = mesh.quadCount; quad < quadCount; ++quad)
+			if (!batch.add(mesh, quad))
+				return;
+		batch.finish();
+	}
+
 	protected static BlockPos getDimensions(Area area, boolean smoother, @Nullable TestMesh testMesh) {
 		return testMesh == null ? getDimensions(area, smoother) : testMesh.dimensions;
 	}
@@ -34,6 +83,95 @@ abstract class SDFMesher implements Mesher {
 		return testMesh == null ? generateDistanceField(area, isSmoothable, smoother) : testMesh.generateDistanceField(area.start.getX(), area.start.getY(), area.start.getZ());
 	}
 
+	/**
+	 * A surface can't pass through an area that only contains one type of block, so there's no need to generate or march over its distance field.
+	 *
+	 * @return The value that every point in the distance field would have if the area only contains one type of block, otherwise NaN
+	 */
+	protected static float getUniformDistance(Area area, Predicate<BlockState> isSmoothable, @Nullable TestMesh testMesh) {
+		if (testMesh != null)
+			return Float.NaN;
+		var state = area.getUniformState();
+		// Both types of distance field end up with the negative density of the block when it's surrounded by itself
+		return state == null ? Float.NaN : -ModUtil.getBlockDensity(isSmoothable, state);
+	}
+
+	/**
+	 * Calls the action for every cell, for when they are all fully inside the isosurface.
+	 */
+	protected static void forEachCell(BlockPos dims, float offset, FullCellAction fullCellAction) {
+		if (fullCellAction == FullCellAction.IGNORE)
+			return;
+		for (int z = 0; z < dims.getZ() - 1; ++z)
+			for (int y = 0; y < dims.getY() - 1; ++y)
+				for (int x = 0; x < dims.getX() - 1; ++x)
+					if (!fullCellAction.apply(x + offset, y + offset, z + offset))
+						return;
+	}
+
+	/**
+	 * Finds the smallest and largest value in the distance field for each brick of 4x4x4 cells (including the corners
+	 * that they share with the next brick).
+	 * If all the values in a brick have the same sign, the surface can't pass through any of its cells, so the meshers
+	 * can skip the whole brick instead of testing the 8 corners of every cell in it.
+	 * Terrain usually only has a thin layer of cells that the surface passes through, so most bricks get skipped.
+	 *
+	 * @return The packed (min, max) of each brick, use {@link #brickIndex} to find a cell's brick
+	 */
+	protected static float[] summariseBricks(float[] distanceField, BlockPos dims) {
+		int dimsX = dims.getX();
+		int dimsY = dims.getY();
+		int dimsZ = dims.getZ();
+		int bricksX = numBricks(dimsX);
+		int bricksY = numBricks(dimsY);
+		int bricksZ = numBricks(dimsZ);
+		var bricks = BRICKS_CACHE.takeArray(bricksX * bricksY * bricksZ * 2);
+		int brick = 0;
+		for (int brickZ = 0; brickZ < bricksZ; ++brickZ) {
+			for (int brickY = 0; brickY < bricksY; ++brickY) {
+				for (int brickX = 0; brickX < bricksX; ++brickX, brick += 2) {
+					float min = Float.POSITIVE_INFINITY;
+					float max = Float.NEGATIVE_INFINITY;
+					int endX = Math.min(brickX * BRICK_SIZE + BRICK_SIZE, dimsX - 1);
+					int endY = Math.min(brickY * BRICK_SIZE + BRICK_SIZE, dimsY - 1);
+					int endZ = Math.min(brickZ * BRICK_SIZE + BRICK_SIZE, dimsZ - 1);
+					for (int z = brickZ * BRICK_SIZE; z <= endZ; ++z) {
+						for (int y = brickY * BRICK_SIZE; y <= endY; ++y) {
+							int index = ModUtil.get3dIndexInto1dArray(brickX * BRICK_SIZE, y, z, dimsX, dimsY);
+							for (int x = brickX * BRICK_SIZE; x <= endX; ++x, ++index) {
+								float value = distanceField[index];
+								min = Math.min(min, value);
+								max = Math.max(max, value);
+							}
+						}
+					}
+					bricks[brick] = min;
+					bricks[brick + 1] = max;
+				}
+			}
+		}
+		return bricks;
+	}
+
+	/**
+	 * @return The index of the min value of the brick that the cell is in, the max value is at index + 1
+	 */
+	protected static int brickIndex(int x, int y, int z, BlockPos dims) {
+		return ModUtil.get3dIndexInto1dArray(x / BRICK_SIZE, y / BRICK_SIZE, z / BRICK_SIZE, numBricks(dims.getX()), numBricks(dims.getY())) * 2;
+	}
+
+	/**
+	 * @return The number of cells that need to be skipped to get to the last cell in the brick that the cell is in
+	 */
+	protected static int cellsLeftInBrick(int x, BlockPos dims) {
+		return Math.min(x | (BRICK_SIZE - 1), dims.getX() - 2) - x;
+	}
+
+	private static int numBricks(int dimension) {
+		// There is one less cell than there are corners
+		return (dimension - 1 + BRICK_SIZE - 1) / BRICK_SIZE;
+	}
+
 	private static BlockPos getDimensions(Area area, boolean smoother) {
 		return smoother ? area.size.subtract(ModUtil.VEC_ONE) : area.size;
 	}
@@ -50,16 +188,29 @@ abstract class SDFMesher implements Mesher {
 	}
 
 	private static float[] generateDistanceField(Area area, Predicate<BlockState> isSmoothable) {
-		var states = area.getAndCacheBlocks();
-		int areaX = area.size.getX();
-		int areaY = area.size.getY();
-		int areaZ = area.size.getZ();
+		var densities = area.getDensities(isSmoothable, DENSITIES_CACHE.takeArray(area.numBlocks()));
+		var size = area.size;
+		var distanceField = CACHE.takeArray((size.getX() - 1) * (size.getY() - 1) * (size.getZ() - 1));
+		return averageCorners(densities, size, distanceField, VECTORISED);
+	}
+
+	/**
+	 * Works out the distance at each corner between 8 blocks from the densities of the blocks.
+	 *
+	 * @param toUse      An array of at least (sizeX - 1) * (sizeY - 1) * (sizeZ - 1) floats
+	 * @param vectorised If the Vector API should be used, see {@link #VECTORISED}
+	 */
+	static float[] averageCorners(float[] densities, BlockPos areaSize, float[] toUse, boolean vectorised) {
+		if (vectorised)
+			return VectorisedFields.averageCorners(densities, areaSize.getX(), areaSize.getY(), areaSize.getZ(), toUse);
+		int areaX = areaSize.getX();
+		int areaY = areaSize.getY();
+		int areaZ = areaSize.getZ();
 
 		int distanceFieldSizeX = areaX - 1;
 		int distanceFieldSizeY = areaY - 1;
 		int distanceFieldSizeZ = areaZ - 1;
-		int distanceFieldSize = distanceFieldSizeX * distanceFieldSizeY * distanceFieldSizeZ;
-		var distanceField = CACHE.takeArray(distanceFieldSize);
+		var distanceField = toUse;
 
 		int index = 0;
 		for (int z = 0; z < areaZ; ++z) {
@@ -67,12 +218,12 @@ abstract class SDFMesher implements Mesher {
 				for (int x = 0; x < areaX; ++x, ++index) {
 					if (z == distanceFieldSizeZ || y == distanceFieldSizeY || x == distanceFieldSizeX)
 						continue;
-					var combinedDensity = 0;
+					var combinedDensity = 0F;
 					int neighbourIndex = index;
 					for (int neighbourZ = 0; neighbourZ < 2; ++neighbourZ, neighbourIndex += areaX * (areaY - 2))
 						for (int neighbourY = 0; neighbourY < 2; ++neighbourY, neighbourIndex += areaX - 2)
 							for (int neighbourX = 0; neighbourX < 2; ++neighbourX, ++neighbourIndex)
-								combinedDensity += ModUtil.getBlockDensity(isSmoothable, states[neighbourIndex]);
+								combinedDensity += densities[neighbourIndex];
 					int distanceFieldIndex = ModUtil.get3dIndexInto1dArray(x, y, z, distanceFieldSizeX, distanceFieldSizeY);
 					distanceField[distanceFieldIndex] = -combinedDensity / 8F;
 				}
@@ -82,12 +233,34 @@ abstract class SDFMesher implements Mesher {
 	}
 
 	static float[] generateNegativeDensityField(Area area, Predicate<BlockState> isSmoothable) {
-		var states = area.getAndCacheBlocks();
 		int length = area.numBlocks();
-		var densityField = CACHE.takeArray(length);
+		var densityField = area.getDensities(isSmoothable, CACHE.takeArray(length));
+		return negate(densityField, length, VECTORISED);
+	}
+
+	/**
+	 * Negates the first length values in the array, in place.
+	 *
+	 * @param vectorised If the Vector API should be used, see {@link #VECTORISED}
+	 */
+	static float[] negate(float[] values, int length, boolean vectorised) {
+		if (vectorised)
+			return VectorisedFields.negate(values, length);
 		for (int i = 0; i < length; ++i)
-			densityField[i] = -ModUtil.getBlockDensity(isSmoothable, states[i]);
-		return densityField;
+			values[i] = -values[i];
+		return values;
+	}
+
+	private static boolean isVectorApiAvailable() {
+		// The incubator module is only there if the game was launched with '--add-modules=jdk.incubator.vector'
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+			return false;
+		try {
+			return VectorisedFields.isSupported();
+		} catch (Throwable t) {
+			LOG.warn("The Vector API is available but can't be used, falling back to scalar distance field generation", t);
+			return false;
+		}
 	}
 
 	interface FullCellAction {
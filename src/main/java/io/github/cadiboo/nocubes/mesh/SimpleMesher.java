@@ -1,35 +1,191 @@
 package io.github.cadiboo.nocubes.mesh;
 
 import io.github.cadiboo.nocubes.util.Area;
+import io.github.cadiboo.nocubes.util.Face;
+import io.github.cadiboo.nocubes.util.ThreadLocalArrayCache;
+import net.minecraft.core.Direction;
 import net.minecraft.world.level.block.state.BlockState;
 
+import java.util.Arrays;
 import java.util.function.Predicate;
 
+import static net.minecraft.core.BlockPos.MutableBlockPos;
+
 abstract class SimpleMesher implements Mesher {
 
+	private static final ThreadLocalArrayCache<long[]> OCCUPANCY_CACHE = new ThreadLocalArrayCache<>(long[]::new, array -> array.length);
+	/** The axis (x = 0, y = 1, z = 2) that each face direction in {@link #generateGreedy} points along. */
+	private static final int[] GREEDY_AXES = {1, 1, 2, 2, 0, 0};
+	private static final Direction[] GREEDY_DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.SOUTH, Direction.NORTH, Direction.EAST, Direction.WEST};
+
 	interface Action {
 		boolean apply(int x, int y, int z, int index);
 	}
 
 	void generate(Area area, Predicate<BlockState> isSmoothable, Action action) {
+		generate(area, generateOccupancy(area, isSmoothable), action);
+	}
+
+	/**
+	 * Calls the action for each smoothable block in the occupancy (in the same order as the area's blocks).
+	 */
+	void generate(Area area, long[] occupancy, Action action) {
 		var size = area.size;
-		int depth = size.getZ();
 		int height = size.getY();
 		int width = size.getX();
+		int widthMulHeight = width * height;
 
-		int index = 0;
-		for (int z = 0; z < depth; ++z) {
-			for (int y = 0; y < height; ++y) {
-				for (int x = 0; x < width; ++x, ++index) {
-					if (isOutsideMesh(x, y, z, size))
-						// Some generators need extra neighbour data, we don't want to call the action for it though
-						continue;
-					if (!isSmoothable.test(area.getAndCacheBlocks()[index]))
-						continue;
-					if (!action.apply(x, y, z, index))
-						return;
+		for (int word = 0, words = getOccupancyLength(area); word < words; ++word) {
+			// Skips 64 non-smoothable blocks at a time
+			for (long bits = occupancy[word]; bits != 0; bits &= bits - 1) {
+				int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+				int z = index / widthMulHeight;
+				int y = (index - z * widthMulHeight) / width;
+				int x = index - z * widthMulHeight - y * width;
+				if (isOutsideMesh(x, y, z, size))
+					// Some generators need extra neighbour data, we don't want to call the action for it though
+					continue;
+				if (!action.apply(x, y, z, index))
+					return;
+			}
+		}
+	}
+
+	/**
+	 * Tests each block in the area once and stores the result as one bit per block (indexed the same as the area's blocks).
+	 * Checking neighbours is then a shift and a mask instead of a predicate call on a BlockState.
+	 * It's also much smaller (~730 bytes instead of ~46 KB of references for an 18x18x18 area).
+	 */
+	static long[] generateOccupancy(Area area, Predicate<BlockState> isSmoothable) {
+		var blocks = area.getAndCacheBlocks();
+		int length = area.numBlocks();
+		int words = getOccupancyLength(area);
+		var occupancy = OCCUPANCY_CACHE.takeArray(words);
+		Arrays.fill(occupancy, 0, words, 0);
+		for (int index = 0; index < length; ++index)
+			if (isSmoothable.test(blocks[index]))
+				occupancy[index >> 6] |= 1L << index;
+		return occupancy;
+	}
+
+	static boolean isOccupied(long[] occupancy, int index) {
+		// Shifts only use the low 6 bits of the index
+		return (occupancy[index >> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Merges the faces of neighbouring blocks that face the same way and have the same state and merge key into rectangles.
+	 * Faces are output in the same order (up, down, south, north, east, west) and with the same winding as the cubic meshers.
+	 * The position passed to the action is the block at the minimum corner of the rectangle.
+	 *
+	 * @param cull If faces between two smoothable blocks should be skipped
+	 */
+	void generateGreedy(Area area, long[] occupancy, boolean cull, FaceMergeKey mergeKey, FaceAction action) {
+		var blocks = area.getAndCacheBlocks();
+		var size = area.size;
+		var negativeExtension = getNegativeAreaExtension();
+		var positiveExtension = getPositiveAreaExtension();
+		int[] min = {negativeExtension.getX(), negativeExtension.getY(), negativeExtension.getZ()};
+		int[] max = {size.getX() - positiveExtension.getX(), size.getY() - positiveExtension.getY(), size.getZ() - positiveExtension.getZ()};
+		int[] strides = {1, size.getX(), size.getX() * size.getY()};
+		int maxLayerSize = Math.max(Math.max(size.getX() * size.getY(), size.getY() * size.getZ()), size.getX() * size.getZ());
+		// The states of the visible faces in the current layer, null if there is no face
+		var layer = new BlockState[maxLayerSize];
+		var layerKeys = new long[maxLayerSize];
+		int[] block = new int[3];
+		int[] end = new int[3];
+		var pos = new MutableBlockPos();
+		var keyPos = new MutableBlockPos();
+		var face = new Face();
+
+		for (int direction = 0; direction < 6; ++direction) {
+			int axis = GREEDY_AXES[direction];
+			boolean positive = (direction & 1) == 0;
+			int u = (axis + 1) % 3;
+			int v = (axis + 2) % 3;
+			int sizeU = max[u] - min[u];
+			int sizeV = max[v] - min[v];
+			int neighbourOffset = positive ? strides[axis] : -strides[axis];
+			var faceDirection = GREEDY_DIRECTIONS[direction];
+			for (block[axis] = min[axis]; block[axis] < max[axis]; ++block[axis]) {
+				for (int j = 0; j < sizeV; ++j) {
+					for (int i = 0; i < sizeU; ++i) {
+						block[u] = min[u] + i;
+						block[v] = min[v] + j;
+						int index = block[0] + block[1] * strides[1] + block[2] * strides[2];
+						boolean visible = isOccupied(occupancy, index) && !(cull && isOccupied(occupancy, index + neighbourOffset));
+						var state = visible ? blocks[index] : null;
+						layer[i + j * sizeU] = state;
+						if (state != null)
+							layerKeys[i + j * sizeU] = mergeKey.get(state, keyPos.set(block[0], block[1], block[2]), faceDirection);
+					}
+				}
+
+				for (int j = 0; j < sizeV; ++j) {
+					for (int i = 0; i < sizeU; ) {
+						var state = layer[i + j * sizeU];
+						if (state == null) {
+							++i;
+							continue;
+						}
+						var key = layerKeys[i + j * sizeU];
+						// Grow along u as far as possible, then along v while the whole row matches
+						int width = 1;
+						while (i + width < sizeU && layer[i + width + j * sizeU] == state && layerKeys[i + width + j * sizeU] == key)
+							++width;
+						int height = 1;
+						grow:
+						while (j + height < sizeV) {
+							for (int k = 0; k < width; ++k) {
+								int next = i + k + (j + height) * sizeU;
+								if (layer[next] != state || layerKeys[next] != key)
+									break grow;
+							}
+							++height;
+						}
+						for (int l = 0; l < height; ++l)
+							Arrays.fill(layer, i + (j + l) * sizeU, i + width + (j + l) * sizeU, null);
+
+						block[u] = min[u] + i;
+						block[v] = min[v] + j;
+						end[axis] = block[axis] + 1;
+						end[u] = block[u] + width;
+						end[v] = block[v] + height;
+						pos.set(block[0], block[1], block[2]);
+						setCubeFace(face, direction, block[0], block[1], block[2], end[0], end[1], end[2]);
+						if (!action.apply(pos, face))
+							return;
+						i += width;
+					}
 				}
 			}
 		}
 	}
+
+	/**
+	 * Sets the face to one side of the box, with the same winding as the faces from the cubic meshers.
+	 *
+	 * @param direction Up, down, south, north, east or west
+	 */
+	private static Face setCubeFace(Face face, int direction, float x0, float y0, float z0, float x1, float y1, float z1) {
+		return switch (direction) {
+			// Up (pos y)
+			case 0 -> face.set(x1, y1, z1, x1, y1, z0, x0, y1, z0, x0, y1, z1);
+			// Down (neg y)
+			case 1 -> face.set(x1, y0, z1, x0, y0, z1, x0, y0, z0, x1, y0, z0);
+			// South (pos z)
+			case 2 -> face.set(x1, y1, z1, x0, y1, z1, x0, y0, z1, x1, y0, z1);
+			// North (neg z)
+			case 3 -> face.set(x1, y1, z0, x1, y0, z0, x0, y0, z0, x0, y1, z0);
+			// East (pos x)
+			case 4 -> face.set(x1, y1, z1, x1, y0, z1, x1, y0, z0, x1, y1, z0);
+			// West (neg x)
+			case 5 -> face.set(x0, y1, z1, x0, y1, z0, x0, y0, z0, x0, y0, z1);
+			default -> throw new IllegalArgumentException("Unknown direction " + direction);
+		};
+	}
+
+	private static int getOccupancyLength(Area area) {
+		return (area.numBlocks() + 63) >> 6;
+	}
 }
@@ -27,6 +27,11 @@ public class StupidCubic extends SimpleMesher {
 		generate(area, isSmoothable, (x, y, z, index) -> ShapeConsumer.acceptFullCube(x, y, z, action));
 	}
 
+	@Override
+	public void generateGeometryMergedInternal(Area area, Predicate<BlockState> isSmoothable, FaceMergeKey mergeKey, FaceAction action) {
+		generateGreedy(area, generateOccupancy(area, isSmoothable), false, mergeKey, action);
+	}
+
 	@Override
 	public void generateGeometryInternal(Area area, Predicate<BlockState> isSmoothable, FaceAction action) {
 		final float min = 0F;
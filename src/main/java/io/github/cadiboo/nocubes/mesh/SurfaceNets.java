@@ -2,10 +2,12 @@ package io.github.cadiboo.nocubes.mesh;
 
 import io.github.cadiboo.nocubes.collision.CollisionHandler;
 import io.github.cadiboo.nocubes.collision.ShapeConsumer;
+import io.github.cadiboo.nocubes.collision.ShapeMerger;
 import io.github.cadiboo.nocubes.mesh.TestData.TestMesh;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.Face;
 import io.github.cadiboo.nocubes.util.ModUtil;
+import io.github.cadiboo.nocubes.util.ThreadLocalArrayCache;
 import io.github.cadiboo.nocubes.util.Vec;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Vec3i;
@@ -28,6 +30,9 @@ import static net.minecraft.core.BlockPos.MutableBlockPos;
  */
 public class SurfaceNets extends SDFMesher {
 
+	private static final ThreadLocalArrayCache<float[]> VERTICES_CACHE = new ThreadLocalArrayCache<>(float[]::new, array -> array.length);
+	private static final ThreadLocalArrayCache<int[]> INDICES_CACHE = new ThreadLocalArrayCache<>(int[]::new, array -> array.length);
+
 	public SurfaceNets(boolean smoothness2x) {
 		super(smoothness2x);
 	}
@@ -51,16 +56,18 @@ public class SurfaceNets extends SDFMesher {
 		var vertexNormals = new Face();
 		var faceNormal = new Vec();
 		var centre = new Vec();
+		var merger = new ShapeMerger(action);
 		generateOrThrow(
 			area, isSmoothable,
-			(x, y, z) -> ShapeConsumer.acceptFullCube(x, y, z, action),
+			(x, y, z) -> ShapeConsumer.acceptFullCube(x, y, z, merger),
 			(pos, face) -> {
 				face.assignAverageTo(centre);
 				face.assignNormalTo(vertexNormals);
 				vertexNormals.assignAverageTo(faceNormal);
-				return CollisionHandler.generateShapes(centre, faceNormal, action, face);
+				return CollisionHandler.generateShapes(centre, faceNormal, merger, face);
 			}
 		);
+		merger.finish();
 	}
 
 	@Override
@@ -68,22 +75,39 @@ public class SurfaceNets extends SDFMesher {
 		generateOrThrow(area, isSmoothable, FullCellAction.IGNORE, action);
 	}
 
+	@Override
+	protected void generateIndexedGeometryInternal(Area area, Predicate<BlockState> isSmoothable, IndexedMesh mesh) {
+		generateOrThrow(area, isSmoothable, FullCellAction.IGNORE, null, mesh);
+	}
+
 	private void generateOrThrow(Area area, Predicate<BlockState> isSmoothable, FullCellAction fullCellAction, FaceAction action) {
+		generateOrThrow(area, isSmoothable, fullCellAction, action, null);
+	}
+
+	/**
+	 * Faces are passed to the action, or if there is a mesh, added to the mesh instead.
+	 */
+	private void generateOrThrow(Area area, Predicate<BlockState> isSmoothable, FullCellAction fullCellAction, @Nullable FaceAction action, @Nullable IndexedMesh mesh) {
 		// Duplicated in MarchingCubes
 		@Nullable TestMesh testMesh = null; // TestData.SPHERE
 		var smoother = smoothness2x;
-		var distanceField = generateDistanceField(area, isSmoothable, smoother, testMesh);
 		var dims = getDimensions(area, smoother, testMesh);
 		// Because we are passing block densities instead of corner distances (see the NB comment in generateDistanceField) we need to offset the mesh
 		float offset = smoother ? 1F : 0.5F;
-		generateOrThrow2(
-			distanceField, dims,
-			(x, y, z) -> fullCellAction.apply(x + offset, y + offset, z + offset),
-			(pos, face) -> action.apply(pos, face.add(offset))
-		);
+		var uniformDistance = getUniformDistance(area, isSmoothable, testMesh);
+		if (!Float.isNaN(uniformDistance)) {
+			if (uniformDistance < 0)
+				forEachCell(dims, offset, fullCellAction);
+			return;
+		}
+		var distanceField = generateDistanceField(area, isSmoothable, smoother, testMesh);
+		generateOrThrow2(distanceField, dims, offset, fullCellAction, action, mesh, summariseBricks(distanceField, dims));
 	}
 
-	private static void generateOrThrow2(float[] distanceField, BlockPos dims, FullCellAction fullCellAction, FaceAction action) {
+	/**
+	 * @param bricks The summary of the distance field from {@link #summariseBricks}
+	 */
+	static void generateOrThrow2(float[] distanceField, BlockPos dims, float offset, FullCellAction fullCellAction, @Nullable FaceAction action, @Nullable IndexedMesh mesh, float[] bricks) {
 		var pos = new MutableBlockPos();
 
 		final Face face = new Face();
@@ -104,8 +128,12 @@ public class SurfaceNets extends SDFMesher {
 		// of the buffer, while displaying the other half and flip sides each frame (so you're not
 		// visibly writing pixels each frame, causing a wipe-down effect as the new data is written
 		// the way that happens in old CRT (cathode-ray tube) monitors/TVs)
-		final Vec[] verticesBuffer = new Vec[axisMultipliers[2] * 2];
+		// Each vertex takes up 3 slots (x, y, z) so that we don't need to allocate a Vec for each one
+		final float[] verticesBuffer = VERTICES_CACHE.takeArray(axisMultipliers[2] * 2 * 3);
+		// Same layout as verticesBuffer, contains the index of each vertex in the mesh
+		final int[] indicesBuffer = mesh == null ? null : INDICES_CACHE.takeArray(axisMultipliers[2] * 2);
 		final float[] vertexUntilIFigureOutTheInterpolationAndIntersection = {0, 0, 0};
+		final boolean ignoreFullCells = fullCellAction == FullCellAction.IGNORE;
 
 		//March over the voxel cornerDistances
 		for (int z = 0; z < dims.getZ() - 1; ++z, n += dims.getX(), buf_no ^= 1, axisMultipliers[2] = -axisMultipliers[2]) {
@@ -116,6 +144,16 @@ public class SurfaceNets extends SDFMesher {
 
 			for (int y = 0; y < dims.getY() - 1; ++y, ++n, bufferPointer += 2) {
 				for (int x = 0; x < dims.getX() - 1; ++x, ++n, ++bufferPointer) {
+					int brick = brickIndex(x, y, z, dims);
+					// Signed distance field values are negative when they fall inside the shape
+					if (bricks[brick] >= 0 || (ignoreFullCells && bricks[brick + 1] < 0)) {
+						// The surface doesn't pass through any cell in this brick, so none of them have vertices or faces
+						int skip = cellsLeftInBrick(x, dims);
+						x += skip;
+						n += skip;
+						bufferPointer += skip;
+						continue;
+					}
 
 					//Read in 8 field values around this vertex and store them in an array
 					//Also calculate 8-bit mask, like in marching cubes, so we can speed up sign checks later
@@ -131,7 +169,7 @@ public class SurfaceNets extends SDFMesher {
 								mask |= insideIsosurface ? (1 << corner) : 0;
 							}
 
-					if (mask == MASK_FULLY_INSIDE_ISOSURFACE && !fullCellAction.apply(x, y, z))
+					if (mask == MASK_FULLY_INSIDE_ISOSURFACE && !fullCellAction.apply(x + offset, y + offset, z + offset))
 						return;
 
 					// Check for early termination if cell does not intersect boundary
@@ -183,12 +221,17 @@ public class SurfaceNets extends SDFMesher {
 					//Now we just average the edge intersections and add them to coordinate
 					// 1.0F = isosurfaceLevel
 					float s = 1.0F / edgeCrossings;
-					Vec vertex = new Vec(vertexUntilIFigureOutTheInterpolationAndIntersection[0], vertexUntilIFigureOutTheInterpolationAndIntersection[1], vertexUntilIFigureOutTheInterpolationAndIntersection[2]);
-					vertex.x = x + s * vertex.x;
-					vertex.y = y + s * vertex.y;
-					vertex.z = z + s * vertex.z;
 					//Add vertex to buffer
-					verticesBuffer[bufferPointer] = vertex;
+					int vertexPointer = bufferPointer * 3;
+					verticesBuffer[vertexPointer] = x + s * vertexUntilIFigureOutTheInterpolationAndIntersection[0];
+					verticesBuffer[vertexPointer + 1] = y + s * vertexUntilIFigureOutTheInterpolationAndIntersection[1];
+					verticesBuffer[vertexPointer + 2] = z + s * vertexUntilIFigureOutTheInterpolationAndIntersection[2];
+					if (mesh != null)
+						indicesBuffer[bufferPointer] = mesh.addVertex(
+							verticesBuffer[vertexPointer] + offset,
+							verticesBuffer[vertexPointer + 1] + offset,
+							verticesBuffer[vertexPointer + 2] + offset
+						);
 
 					//Now we need to add faces together, to do this we just loop over 3 basis components
 					for (int axis = 0; axis < 3; ++axis) {
@@ -211,22 +254,15 @@ public class SurfaceNets extends SDFMesher {
 						final int dv = axisMultipliers[nextNextAxis];
 
 						//Remember to flip orientation depending on the sign of the corner.
-						if ((mask & 1) != 0) {
-							face.set(
-								verticesBuffer[bufferPointer],
-								verticesBuffer[bufferPointer - dv],
-								verticesBuffer[bufferPointer - du - dv],
-								verticesBuffer[bufferPointer - du]
-							);
-						} else {
-							face.set(
-								verticesBuffer[bufferPointer],
-								verticesBuffer[bufferPointer - du],
-								verticesBuffer[bufferPointer - du - dv],
-								verticesBuffer[bufferPointer - dv]
-							);
+						// NB: The vertices are in the opposite order to the original algorithm (it used to be fixed up afterwards with Face#flip)
+						int v1 = (mask & 1) != 0 ? bufferPointer - du : bufferPointer - dv;
+						int v2 = bufferPointer - du - dv;
+						int v3 = (mask & 1) != 0 ? bufferPointer - dv : bufferPointer - du;
+						if (mesh != null) {
+							mesh.addQuad(x, y, z, indicesBuffer[bufferPointer], indicesBuffer[v1], indicesBuffer[v2], indicesBuffer[v3]);
+							continue;
 						}
-						face.flip(); // TODO: I should probably fix this at some point
+						setFace(face, verticesBuffer, bufferPointer, v1, v2, v3).add(offset);
 						pos.set(x, y, z);
 						if (!action.apply(pos, face))
 							return;
@@ -236,6 +272,22 @@ public class SurfaceNets extends SDFMesher {
 		}
 	}
 
+	/**
+	 * Copies the vertices at the (un-multiplied) pointers in the buffer into the face.
+	 */
+	private static Face setFace(Face face, float[] verticesBuffer, int v0, int v1, int v2, int v3) {
+		v0 *= 3;
+		v1 *= 3;
+		v2 *= 3;
+		v3 *= 3;
+		return face.set(
+			verticesBuffer[v0], verticesBuffer[v0 + 1], verticesBuffer[v0 + 2],
+			verticesBuffer[v1], verticesBuffer[v1 + 1], verticesBuffer[v1 + 2],
+			verticesBuffer[v2], verticesBuffer[v2 + 1], verticesBuffer[v2 + 2],
+			verticesBuffer[v3], verticesBuffer[v3 + 1], verticesBuffer[v3 + 2]
+		);
+	}
+
 	private static float getAmountInsideIsosurface(boolean smoother, float[] cornerDistances) {
 		if (!smoother) {
 			// cornerDistances is not actually the values of the corners, it's the values of the neighbouring cubes
@@ -1,17 +1,30 @@
 package io.github.cadiboo.nocubes.mixin;
 
 import io.github.cadiboo.nocubes.hooks.Hooks;
+import io.github.cadiboo.nocubes.hooks.INoCubesBlockCollisions;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.BlockCollisions;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.shapes.CollisionContext;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
 @Mixin(BlockCollisions.class)
-public class BlockCollisionsMixin {
+public class BlockCollisionsMixin implements INoCubesBlockCollisions {
+
+	@Unique
+	private boolean nocubes_skipSmoothables;
+
+	@Override
+	public void skipSmoothables() {
+		nocubes_skipSmoothables = true;
+	}
 
 	/**
 	 * Stops grass path collisions being broken.
@@ -36,4 +49,20 @@ public class BlockCollisionsMixin {
 		return state.isSuffocating(blockGetter, blockPos);
 	}
 
+	/**
+	 * Documentation on {@link INoCubesBlockCollisions#skipSmoothables}
+	 */
+	@Redirect(
+		method = "computeNext()Lnet/minecraft/world/phys/shapes/VoxelShape;",
+		at = @At(
+			value = "INVOKE",
+			target = "Lnet/minecraft/world/level/block/state/BlockState;getCollisionShape(Lnet/minecraft/world/level/BlockGetter;Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/phys/shapes/CollisionContext;)Lnet/minecraft/world/phys/shapes/VoxelShape;"
+		)
+	)
+	public VoxelShape nocubes_getCollisionShape(BlockState state, BlockGetter blockGetter, BlockPos blockPos, CollisionContext context) {
+		if (nocubes_skipSmoothables && Hooks.collisionsEnabledFor(state))
+			return Shapes.empty();
+		return state.getCollisionShape(blockGetter, blockPos, context);
+	}
+
 }
@@ -0,0 +1,33 @@
+package io.github.cadiboo.nocubes.mixin;
+
+import io.github.cadiboo.nocubes.collision.CollisionHandler;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+@Mixin(Entity.class)
+public abstract class EntityMixin {
+
+	/**
+	 * Documentation on {@link CollisionHandler#collideBoundingBox}
+	 */
+	@Inject(
+		method = "collideBoundingBox(Lnet/minecraft/world/entity/Entity;Lnet/minecraft/world/phys/Vec3;Lnet/minecraft/world/phys/AABB;Lnet/minecraft/world/level/Level;Ljava/util/List;)Lnet/minecraft/world/phys/Vec3;",
+		at = @At("HEAD"),
+		cancellable = true
+	)
+	private static void nocubes_collideBoundingBox(@Nullable Entity entity, Vec3 motion, AABB aabb, Level level, List<VoxelShape> entityShapes, CallbackInfoReturnable<Vec3> cir) {
+		if (CollisionHandler.shouldSweep(entity))
+			cir.setReturnValue(CollisionHandler.collideBoundingBox(entity, motion, aabb, level, entityShapes));
+	}
+
+}
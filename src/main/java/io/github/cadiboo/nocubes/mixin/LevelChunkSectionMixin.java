@@ -0,0 +1,123 @@
+package io.github.cadiboo.nocubes.mixin;
+
+import io.github.cadiboo.nocubes.collision.SectionCollisions;
+import io.github.cadiboo.nocubes.hooks.INoCubesChunkSection;
+import io.github.cadiboo.nocubes.hooks.INoCubesChunkSection.Densities;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import javax.annotation.Nullable;
+
+@Mixin(LevelChunkSection.class)
+public abstract class LevelChunkSectionMixin implements INoCubesChunkSection {
+
+	@Shadow
+	@Final
+	private PalettedContainer<BlockState> states;
+
+	/**
+	 * Created the first time it's needed, most sections are never meshed on the server.
+	 * Sections are read from by other threads (e.g. the chunk render workers) while blocks are being set, so this is
+	 * only published once it is known that no block changed while it was being computed (see {@link #getTerrainDensities}).
+	 * The densities and the version they were computed with are published together so that a thread can never see
+	 * one without the other.
+	 */
+	@Unique
+	private volatile @Nullable Densities nocubes_densities;
+	@Unique
+	private volatile int nocubes_modificationCount;
+	@Unique
+	private @Nullable SectionCollisions nocubes_collisions;
+	@Unique
+	private volatile boolean nocubes_watched;
+
+	@Override
+	public byte[] getTerrainDensities() {
+		var stored = nocubes_densities;
+		var version = DensityTable.getVersion();
+		if (stored != null && stored.version() == version)
+			return stored.values();
+		var states = this.states;
+		byte[] densities;
+		int modificationCount;
+		do {
+			modificationCount = nocubes_modificationCount;
+			densities = new byte[16 * 16 * 16];
+			int index = 0;
+			for (int y = 0; y < 16; ++y)
+				for (int z = 0; z < 16; ++z)
+					for (int x = 0; x < 16; ++x, ++index)
+						densities[index] = DensityTable.getQuantised(states.get(x, y, z));
+			nocubes_densities = new Densities(densities, version);
+			// A block that was set before the densities were published may have been missed (and not updated in them
+			// by setBlockState because there was nothing to update yet), so they need to be computed again
+		} while (modificationCount != nocubes_modificationCount);
+		return densities;
+	}
+
+	@Override
+	public int getModificationCount() {
+		return nocubes_modificationCount;
+	}
+
+	@Override
+	public void watch() {
+		if (!nocubes_watched)
+			nocubes_watched = true;
+	}
+
+	@Override
+	public @Nullable SectionCollisions getCollisions() {
+		return nocubes_collisions;
+	}
+
+	@Override
+	public void setCollisions(@Nullable SectionCollisions collisions) {
+		nocubes_collisions = collisions;
+	}
+
+	/**
+	 * Keeps the densities up to date when a block changes so that they don't need to be recomputed.
+	 * Also lets caches know that the section changed.
+	 */
+	@Inject(
+		method = "setBlockState(IIILnet/minecraft/world/level/block/state/BlockState;Z)Lnet/minecraft/world/level/block/state/BlockState;",
+		at = @At("RETURN")
+	)
+	public void nocubes_setBlockState(int x, int y, int z, BlockState state, boolean useLocks, CallbackInfoReturnable<BlockState> cir) {
+		if (cir.getReturnValue() == state)
+			return;
+		++nocubes_modificationCount;
+		var stored = nocubes_densities;
+		if (stored != null)
+			stored.values()[(y << 8) | (z << 4) | x] = DensityTable.getQuantised(state);
+		if (nocubes_watched)
+			SectionCollisions.onSectionModified();
+	}
+
+	/**
+	 * The client replaces all the blocks in a section when it receives the chunk from the server.
+	 */
+	@Inject(
+		method = "read(Lnet/minecraft/network/FriendlyByteBuf;)V",
+		at = @At("RETURN")
+	)
+	public void nocubes_read(FriendlyByteBuf buffer, CallbackInfo ci) {
+		++nocubes_modificationCount;
+		nocubes_densities = null;
+		if (nocubes_watched)
+			SectionCollisions.onSectionModified();
+	}
+
+}
@@ -1,17 +1,71 @@
 package io.github.cadiboo.nocubes.mixin;
 
+import io.github.cadiboo.nocubes.NoCubes;
 import io.github.cadiboo.nocubes.config.NoCubesConfig;
 import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.state.BlockState;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Constant;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyConstant;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(LevelRenderer.class)
 public class LevelRendererMixin {
 
+	/**
+	 * Whether the block change that is currently being processed can affect our meshes, null if we don't know what changed.
+	 * Only accessed from the render thread.
+	 */
+	@Unique
+	private Boolean nocubes_changeAffectsMeshes;
+
+	/**
+	 * Called when a block is updated (with flag 2).
+	 * Remembers if the change matters to us so that {@link #nocubes_setBlocksDirty} only extends the dirty area when it needs to.
+	 */
+	@Inject(
+		method = {
+			"blockChanged(Lnet/minecraft/world/level/BlockGetter;Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;Lnet/minecraft/world/level/block/state/BlockState;I)V",
+		},
+		at = @At("HEAD")
+	)
+	public void nocubes_blockChanged(BlockGetter level, BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo ci) {
+		nocubes_changeAffectsMeshes = nocubes_affectsMeshes(oldState, newState);
+	}
+
+	/**
+	 * Called when a block is changed on the client and its model might be different.
+	 */
+	@Inject(
+		method = "setBlockDirty(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;Lnet/minecraft/world/level/block/state/BlockState;)V",
+		at = @At("HEAD")
+	)
+	public void nocubes_setBlockDirty(BlockPos pos, BlockState oldState, BlockState newState, CallbackInfo ci) {
+		nocubes_changeAffectsMeshes = nocubes_affectsMeshes(oldState, newState);
+	}
+
+	@Inject(
+		method = {
+			"blockChanged(Lnet/minecraft/world/level/BlockGetter;Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;Lnet/minecraft/world/level/block/state/BlockState;I)V",
+			"setBlockDirty(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;Lnet/minecraft/world/level/block/state/BlockState;)V",
+		},
+		at = @At("RETURN")
+	)
+	public void nocubes_forgetBlockChange(CallbackInfo ci) {
+		nocubes_changeAffectsMeshes = null;
+	}
+
 	/**
 	 * The method 'setBlocksDirty' gets called when a block is updated and marked for re-render.
 	 * Extending the size of the area that gets updated fixes seams that appear when meshes along chunk borders change.
+	 * A mesh can only change if the blocks in its area (which extends into the neighbouring sections by up to 2 blocks) do,
+	 * so the area is only extended as far as the mesher needs and only for changes that involve smoothable blocks.
+	 * Changes to other blocks (e.g. redstone, torches, chests) are re-rendered the same way they are in vanilla.
 	 */
 	@ModifyConstant(
 		method = {
@@ -22,8 +76,26 @@ public class LevelRendererMixin {
 		require = 6 * 2 // 6 replacements for each method, targets 2 methods
 	)
 	public int nocubes_setBlocksDirty(int originalValue) {
+		if (!NoCubesConfig.Client.render || nocubes_changeAffectsMeshes == Boolean.FALSE)
+			return originalValue;
 		// Math.max so if someone else also modifies the value (e.g. to 3) we don't overwrite their extension
-		return NoCubesConfig.Client.render ? Math.max(2, originalValue) : originalValue;
+		var mesher = NoCubesConfig.Server.mesher;
+		var negative = mesher.getNegativeAreaExtension();
+		var positive = mesher.getPositiveAreaExtension();
+		int extension = Math.max(
+			Math.max(negative.getX(), Math.max(negative.getY(), negative.getZ())),
+			Math.max(positive.getX(), Math.max(positive.getY(), positive.getZ()))
+		);
+		return Math.max(extension, originalValue);
+	}
+
+	@Unique
+	private static boolean nocubes_affectsMeshes(BlockState oldState, BlockState newState) {
+		var smoothables = NoCubes.smoothableHandler;
+		if (smoothables.isSmoothable(oldState) || smoothables.isSmoothable(newState))
+			return true;
+		// Extended fluids are rendered in the smoothable blocks near them
+		return NoCubesConfig.Server.extendFluidsRange > 0 && !(oldState.getFluidState().isEmpty() && newState.getFluidState().isEmpty());
 	}
 
 }
@@ -0,0 +1,30 @@
+package io.github.cadiboo.nocubes.mixin;
+
+import io.github.cadiboo.nocubes.hooks.INoCubesPalettedContainer;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+@Mixin(PalettedContainer.class)
+public abstract class PalettedContainerMixin<T> implements INoCubesPalettedContainer<T> {
+
+	@Shadow
+	private volatile PalettedContainer.Data<T> data;
+
+	@Override
+	public @Nullable BitStorage getPaletteEntries(Consumer<T> entryConsumer) {
+		var data = this.data;
+		var palette = data.palette();
+		if (palette instanceof GlobalPalette)
+			return null;
+		for (int i = 0, size = palette.getSize(); i < size; ++i)
+			entryConsumer.accept(palette.valueFor(i));
+		return data.storage();
+	}
+
+}
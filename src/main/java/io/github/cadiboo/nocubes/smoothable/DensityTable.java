@@ -0,0 +1,106 @@
+package io.github.cadiboo.nocubes.smoothable;
+
+import io.github.cadiboo.nocubes.NoCubes;
+import io.github.cadiboo.nocubes.util.ModUtil;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockBehaviour.BlockStateBase;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.function.Predicate;
+
+/**
+ * The density (see {@link ModUtil#getBlockDensity}) of every block state with the current smoothables,
+ * indexed by the id of the state in {@link Block#BLOCK_STATE_REGISTRY}.
+ * Saves working out if the state is a snow layer (and how tall it is) every time its density is needed.
+ * Rebuilt whenever the smoothables are recomputed from the config and kept up to date when a state's smoothability changes.
+ * Each rebuild or update changes the version once, however many states it covers.
+ */
+public final class DensityTable {
+
+	/**
+	 * The smoothables that this table is for.
+	 * Pass this (instead of an equivalent lambda) to {@link io.github.cadiboo.nocubes.util.Area#getDensities} so that
+	 * it can use the densities stored in each chunk section.
+	 */
+	public static final Predicate<BlockState> IS_SMOOTHABLE = state -> NoCubes.smoothableHandler.isSmoothable(state);
+	/**
+	 * Densities are stored in chunk sections as bytes, multiplied by this.
+	 * Snow layers (which have densities in multiples of 1/4) and full blocks are stored exactly.
+	 */
+	public static final float QUANTISATION_SCALE = 64;
+
+	/**
+	 * The density for each possible quantised value, indexed by the unsigned value of the byte.
+	 */
+	private static final float[] DEQUANTISED = new float[256];
+
+	static {
+		for (int i = 0; i < DEQUANTISED.length; ++i)
+			DEQUANTISED[i] = (byte) i / QUANTISATION_SCALE;
+	}
+
+	private static volatile float[] densities = new float[0];
+	/**
+	 * Incremented whenever a density changes, so that densities stored elsewhere know that they need to be recomputed.
+	 */
+	private static volatile int version;
+
+	public static void rebuild(SmoothableHandler handler) {
+		var registry = Block.BLOCK_STATE_REGISTRY;
+		var table = new float[registry.size()];
+		for (var state : registry)
+			table[registry.getId(state)] = computeDensity(handler.isSmoothable(state), state);
+		densities = table;
+		++version;
+	}
+
+	public static void update(boolean smoothable, BlockState state) {
+		set(densities, smoothable, state);
+		++version;
+	}
+
+	/**
+	 * Like {@link #update(boolean, BlockState)} but only changes the version once, so that the densities stored elsewhere
+	 * are only recomputed once.
+	 */
+	public static void update(boolean smoothable, BlockStateBase[] states) {
+		var table = densities;
+		for (var state : states)
+			if (state instanceof BlockState blockState)
+				set(table, smoothable, blockState);
+		++version;
+	}
+
+	private static void set(float[] table, boolean smoothable, BlockState state) {
+		var id = Block.getId(state);
+		if (id >= 0 && id < table.length)
+			table[id] = computeDensity(smoothable, state);
+	}
+
+	public static int getVersion() {
+		return version;
+	}
+
+	public static byte getQuantised(BlockState state) {
+		return (byte) Mth.clamp(Math.round(get(state) * QUANTISATION_SCALE), Byte.MIN_VALUE, Byte.MAX_VALUE);
+	}
+
+	public static float dequantise(byte quantised) {
+		return DEQUANTISED[quantised & 0xFF];
+	}
+
+	/**
+	 * @return The density of the state if it is smoothable in the config, otherwise {@link ModUtil#NOT_SMOOTHABLE}
+	 */
+	public static float get(BlockState state) {
+		var table = densities;
+		var id = Block.getId(state);
+		return id >= 0 && id < table.length ? table[id] : ModUtil.NOT_SMOOTHABLE;
+	}
+
+	private static float computeDensity(boolean smoothable, BlockState state) {
+		return smoothable ? ModUtil.getSmoothedDensity(state) : ModUtil.NOT_SMOOTHABLE;
+	}
+
+}
@@ -2,6 +2,7 @@ package io.github.cadiboo.nocubes.smoothable;
 
 import io.github.cadiboo.nocubes.hooks.INoCubesBlockState;
 import net.minecraft.world.level.block.state.BlockBehaviour.BlockStateBase;
+import net.minecraft.world.level.block.state.BlockState;
 
 /**
  * The in-memory list of smoothables.
@@ -18,9 +19,16 @@ public interface SmoothableHandler {
 
 	default void setSmoothable(boolean newValue, BlockStateBase[] states) {
 		for (var state : states)
-			setSmoothable(newValue, state);
+			setSmoothableWithoutDensity(newValue, state);
+		DensityTable.update(newValue, states);
 	}
 
+	/**
+	 * Like {@link #setSmoothable(boolean, BlockStateBase)} but leaves the {@link DensityTable} alone, for when lots of
+	 * states are changed at once and the table is updated (or rebuilt) afterwards.
+	 */
+	void setSmoothableWithoutDensity(boolean newValue, BlockStateBase state);
+
 	static SmoothableHandler create() {
 		return new SmoothableHandler() {
 			@Override
@@ -30,6 +38,13 @@ public interface SmoothableHandler {
 
 			@Override
 			public void setSmoothable(boolean newValue, BlockStateBase state) {
+				setSmoothableWithoutDensity(newValue, state);
+				if (state instanceof BlockState blockState)
+					DensityTable.update(newValue, blockState);
+			}
+
+			@Override
+			public void setSmoothableWithoutDensity(boolean newValue, BlockStateBase state) {
 				((INoCubesBlockState) state).setTerrainSmoothable(newValue);
 			}
 		};
@@ -1,6 +1,9 @@
 package io.github.cadiboo.nocubes.util;
 
+import io.github.cadiboo.nocubes.hooks.INoCubesChunkSection;
+import io.github.cadiboo.nocubes.hooks.INoCubesPalettedContainer;
 import io.github.cadiboo.nocubes.mesh.Mesher;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Vec3i;
 import net.minecraft.world.level.BlockGetter;
@@ -9,8 +12,11 @@ import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.chunk.LevelChunkSection;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.function.Predicate;
 
 public class Area implements AutoCloseable {
 
@@ -21,6 +27,8 @@ public class Area implements AutoCloseable {
 	private final BlockGetter world;
 	// Arrays are indexed [z][y][x] for cache locality
 	private BlockState[] blocks;
+	private boolean checkedUniformity;
+	private @Nullable BlockState uniformState;
 
 	public /* for testing */ Area(BlockGetter world, BlockPos startInclusive, BlockPos size) {
 		this.world = world;
@@ -70,6 +78,255 @@ public class Area implements AutoCloseable {
 		return blocks;
 	}
 
+	/**
+	 * Copies the blocks out of the per-thread array they are stored in, so that another area can be used on this thread
+	 * without overwriting them.
+	 */
+	public void detachBlocks() {
+		var blocks = getAndCacheBlocks();
+		this.blocks = Arrays.copyOf(blocks, numBlocks());
+	}
+
+	/**
+	 * Finds out if every block in the area is the same by only looking at the palettes of the chunk sections it's in.
+	 * Most sections in the sky (only air) and deep underground (a single type of stone) are like this.
+	 * No blocks are read so this is much cheaper than {@link #getAndCacheBlocks()}.
+	 *
+	 * @return The state of every block in the area, or null if they aren't all the same (or we can't tell)
+	 */
+	public @Nullable BlockState getUniformState() {
+		if (!checkedUniformity) {
+			checkedUniformity = true;
+			if (world instanceof LevelReader reader)
+				uniformState = findUniformState(start, size, reader);
+		}
+		return uniformState;
+	}
+
+	private static @Nullable BlockState findUniformState(BlockPos start, BlockPos size, LevelReader world) {
+		final var air = Blocks.AIR.defaultBlockState();
+		var uniformState = new BlockState[1];
+		var uniform = forEachSection(start, size, world, (section, sectionX, sectionY, sectionZ) -> {
+			BlockState sectionState;
+			if (section == null || section.hasOnlyAir())
+				sectionState = air;
+			else {
+				var states = section.getStates();
+				var first = states.get(0, 0, 0);
+				// Only checks the palette (which may contain unused entries) so can give false negatives but never false positives
+				if (states.maybeHas(state -> state != first))
+					return false;
+				sectionState = first;
+			}
+			if (uniformState[0] == null)
+				uniformState[0] = sectionState;
+			return uniformState[0] == sectionState;
+		});
+		return uniform ? uniformState[0] : null;
+	}
+
+	/**
+	 * Fills the array with the density (see {@link ModUtil#getBlockDensity}) of each block in the area.
+	 * Chunk sections usually only contain a handful of different states, so instead of working out the density of every
+	 * block from scratch, it is worked out once for each entry in the palettes of the sections and then looked up by
+	 * the palette index of each block.
+	 * If the predicate is {@link DensityTable#IS_SMOOTHABLE} the densities stored in the sections are used instead.
+	 *
+	 * @param toUse An array of at least {@link #numBlocks()} floats
+	 */
+	public float[] getDensities(Predicate<BlockState> isSmoothable, float[] toUse) {
+		if (world instanceof LevelReader reader) {
+			if (isSmoothable == DensityTable.IS_SMOOTHABLE)
+				return copySectionDensities(reader, toUse);
+			return computeSectionDensities(reader, isSmoothable, toUse);
+		}
+		var blocks = getAndCacheBlocks();
+		// Neighbouring blocks are usually the same
+		BlockState previous = null;
+		float previousDensity = 0;
+		for (int i = 0, length = numBlocks(); i < length; ++i) {
+			var state = blocks[i];
+			if (state != previous) {
+				previous = state;
+				previousDensity = ModUtil.getBlockDensity(isSmoothable, state);
+			}
+			toUse[i] = previousDensity;
+		}
+		return toUse;
+	}
+
+	/**
+	 * Works out the density of each entry in the palette of each section and then uses the palette index of each block
+	 * to look it up, so no blocks are read and no states are searched for.
+	 * Sections with a global palette contain too many different states for this to be worth it, their blocks are
+	 * read instead.
+	 */
+	private float[] computeSectionDensities(LevelReader world, Predicate<BlockState> isSmoothable, float[] toUse) {
+		var start = this.start;
+		var size = this.size;
+		int startX = start.getX();
+		int startY = start.getY();
+		int startZ = start.getZ();
+		int endX = startX + size.getX();
+		int endY = startY + size.getY();
+		int endZ = startZ + size.getZ();
+		int sizeX = size.getX();
+		int sizeY = size.getY();
+		float airDensity = ModUtil.getBlockDensity(isSmoothable, Blocks.AIR.defaultBlockState());
+		// Block palettes are global once they have more than 256 entries
+		var paletteDensities = new float[256];
+		var paletteSize = new int[1];
+		forEachSection(start, size, world, (section, sectionX, sectionY, sectionZ) -> {
+			int minX = Math.max(startX, sectionX << 4), maxX = Math.min(endX, (sectionX << 4) + 16);
+			int minY = Math.max(startY, sectionY << 4), maxY = Math.min(endY, (sectionY << 4) + 16);
+			int minZ = Math.max(startZ, sectionZ << 4), maxZ = Math.min(endZ, (sectionZ << 4) + 16);
+			if (section == null) {
+				for (int z = minZ; z < maxZ; ++z)
+					for (int y = minY; y < maxY; ++y) {
+						int index = ModUtil.get3dIndexInto1dArray(minX - startX, y - startY, z - startZ, sizeX, sizeY);
+						Arrays.fill(toUse, index, index + maxX - minX, airDensity);
+					}
+				return true;
+			}
+			paletteSize[0] = 0;
+			@SuppressWarnings("unchecked")
+			@Nullable var paletteIndices = ((INoCubesPalettedContainer<BlockState>) section.getStates()).getPaletteEntries(state -> {
+				int index = paletteSize[0]++;
+				if (index == paletteDensities.length)
+					throw new IllegalStateException("Palettes with more than " + paletteDensities.length + " entries should have been global");
+				paletteDensities[index] = state == null ? airDensity : ModUtil.getBlockDensity(isSmoothable, state);
+			});
+			for (int z = minZ; z < maxZ; ++z) {
+				for (int y = minY; y < maxY; ++y) {
+					int index = ModUtil.get3dIndexInto1dArray(minX - startX, y - startY, z - startZ, sizeX, sizeY);
+					int sectionIndex = ((y & 15) << 8) | ((z & 15) << 4);
+					if (paletteIndices == null)
+						for (int x = minX; x < maxX; ++x, ++index)
+							toUse[index] = ModUtil.getBlockDensity(isSmoothable, section.getBlockState(x & 15, y & 15, z & 15));
+					else
+						for (int x = minX; x < maxX; ++x, ++index)
+							toUse[index] = paletteDensities[paletteIndices.get(sectionIndex | (x & 15))];
+				}
+			}
+			return true;
+		});
+		return toUse;
+	}
+
+	/**
+	 * Copies the densities that each chunk section keeps up to date (see {@link INoCubesChunkSection}) instead of
+	 * looking at the blocks in the area.
+	 * Most of the sections an area covers are neighbours that it only overlaps by a block or two (its halo), those
+	 * densities are copied straight out of the neighbour's array in rows so that no blocks or palettes are looked at.
+	 */
+	private float[] copySectionDensities(LevelReader world, float[] toUse) {
+		var start = this.start;
+		var size = this.size;
+		int startX = start.getX();
+		int startY = start.getY();
+		int startZ = start.getZ();
+		int endX = startX + size.getX();
+		int endY = startY + size.getY();
+		int endZ = startZ + size.getZ();
+		int sizeX = size.getX();
+		int sizeY = size.getY();
+		float airDensity = DensityTable.get(Blocks.AIR.defaultBlockState());
+		forEachSection(start, size, world, (section, sectionX, sectionY, sectionZ) -> {
+			@Nullable var densities = section == null ? null : ((INoCubesChunkSection) section).getTerrainDensities();
+			int minX = Math.max(startX, sectionX << 4), maxX = Math.min(endX, (sectionX << 4) + 16);
+			int minY = Math.max(startY, sectionY << 4), maxY = Math.min(endY, (sectionY << 4) + 16);
+			int minZ = Math.max(startZ, sectionZ << 4), maxZ = Math.min(endZ, (sectionZ << 4) + 16);
+			for (int z = minZ; z < maxZ; ++z) {
+				for (int y = minY; y < maxY; ++y) {
+					int index = ModUtil.get3dIndexInto1dArray(minX - startX, y - startY, z - startZ, sizeX, sizeY);
+					if (densities == null) {
+						Arrays.fill(toUse, index, index + maxX - minX, airDensity);
+						continue;
+					}
+					int sectionIndex = ((y & 15) << 8) | ((z & 15) << 4);
+					for (int x = minX; x < maxX; ++x, ++index)
+						toUse[index] = DensityTable.dequantise(densities[sectionIndex | (x & 15)]);
+				}
+			}
+			return true;
+		});
+		return toUse;
+	}
+
+	public interface SectionConsumer {
+		/**
+		 * @param section The section or null if it (or its chunk) doesn't exist and should be treated as air
+		 * @return If iteration should continue
+		 */
+		boolean accept(@Nullable LevelChunkSection section, int sectionX, int sectionY, int sectionZ);
+	}
+
+	/**
+	 * @return If every section was visited (the consumer never returned false)
+	 */
+	public static boolean forEachSection(BlockPos start, BlockPos size, LevelReader world, SectionConsumer consumer) {
+		int startX = start.getX();
+		int startY = start.getY();
+		int startZ = start.getZ();
+		int endXInclusive = startX + size.getX() - 1;
+		int endYInclusive = startY + size.getY() - 1;
+		int endZInclusive = startZ + size.getZ() - 1;
+		for (int chunkZ = startZ >> 4; chunkZ <= endZInclusive >> 4; ++chunkZ) {
+			for (int chunkX = startX >> 4; chunkX <= endXInclusive >> 4; ++chunkX) {
+				@Nullable var chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.EMPTY, false);
+				@Nullable var sections = chunk == null ? null : chunk.getSections();
+				int chunkMinSection = chunk != null ? chunk.getMinSection() : 0;
+				for (int sectionY = startY >> 4; sectionY <= endYInclusive >> 4; ++sectionY) {
+					int sectionIndex = sectionY - chunkMinSection;
+					// Same as in traverse, missing chunks and sections are treated as air
+					@Nullable var section = sections == null || (sectionIndex < 0 || sectionIndex >= sections.length) ? null : sections[sectionIndex];
+					if (!consumer.accept(section, chunkX, sectionY, chunkZ))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates an area that covers part of this one along the Z axis and has its own copy of the blocks.
+	 * The copy doesn't share any mutable state with this area and doesn't access the world so can be used on other threads.
+	 *
+	 * @param relativeStartZ Where the copy starts, relative to the start of this area
+	 */
+	public Area copyOfZRange(int relativeStartZ, int sizeZ) {
+		var blocks = getAndCacheBlocks();
+		int sliceLength = size.getX() * size.getY();
+		var copy = new Area(null, start.offset(0, 0, relativeStartZ), new BlockPos(size.getX(), size.getY(), sizeZ));
+		// Not from the BLOCKS_CACHE, that belongs to whichever thread the copy ends up being used on
+		copy.blocks = Arrays.copyOfRange(blocks, relativeStartZ * sliceLength, (relativeStartZ + sizeZ) * sliceLength);
+		copy.checkedUniformity = true;
+		copy.uniformState = getUniformState();
+		return copy;
+	}
+
+	/**
+	 * Like {@link #copyOfZRange} but for any box inside this area.
+	 * The copy keeps this area's world so that blocks outside it (e.g. the neighbours of a face) can still be looked up,
+	 * which means it should only be used on the same thread as this area.
+	 *
+	 * @param relativeStart Where the copy starts, relative to the start of this area
+	 */
+	public Area copyOfRange(BlockPos relativeStart, BlockPos size) {
+		var blocks = getAndCacheBlocks();
+		var copy = new Area(world, start.offset(relativeStart), size);
+		int sizeX = size.getX();
+		var copied = copy.blocks = new BlockState[ModUtil.length(size)];
+		int copiedIndex = 0;
+		for (int z = 0; z < size.getZ(); ++z) {
+			for (int y = 0; y < size.getY(); ++y, copiedIndex += sizeX) {
+				int index = indexIfInsideCache(relativeStart.getX(), relativeStart.getY() + y, relativeStart.getZ() + z);
+				System.arraycopy(blocks, index, copied, copiedIndex, sizeX);
+			}
+		}
+		return copy;
+	}
+
 	public int numBlocks() {
 		return ModUtil.length(size);
 	}
@@ -3,6 +3,7 @@ package io.github.cadiboo.nocubes.util;
 import com.google.common.collect.ImmutableList;
 import io.github.cadiboo.nocubes.NoCubes;
 import io.github.cadiboo.nocubes.config.NoCubesConfig;
+import io.github.cadiboo.nocubes.smoothable.DensityTable;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.resources.language.I18n;
 import net.minecraft.core.BlockPos;
@@ -58,6 +59,15 @@ public class ModUtil {
 	public static float getBlockDensity(boolean shouldSmooth, BlockState state) {
 		if (!shouldSmooth)
 			return NOT_SMOOTHABLE;
+		var density = DensityTable.get(state);
+		// The table only knows the densities of states that are smoothable in the config, other predicates may smooth other states
+		return density != NOT_SMOOTHABLE ? density : getSmoothedDensity(state);
+	}
+
+	/**
+	 * @return The density the block would have if it was smoothed
+	 */
+	public static float getSmoothedDensity(BlockState state) {
 		if (isSnowLayer(state))
 			// Snow layer, not the actual whole snow block
 			return mapSnowHeight(state.getValue(SnowLayerBlock.LAYERS));
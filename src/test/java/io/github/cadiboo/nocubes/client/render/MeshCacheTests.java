@@ -0,0 +1,56 @@
+package io.github.cadiboo.nocubes.client.render;
+
+import io.github.cadiboo.nocubes.mesh.IndexedMesh;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class MeshCacheTests {
+
+	private static final BlockPos SIZE = new BlockPos(4, 3, 2);
+
+	@Test
+	public void nothingShouldChangeWhenTheKeysAreTheSame() {
+		var keys = keys();
+		assertNull(MeshCache.findChangedBox(pack(keys), keys.clone(), SIZE));
+	}
+
+	@Test
+	public void changedBoxShouldContainEveryChangedBlock() {
+		var keys = keys();
+		var changed = keys.clone();
+		changed[index(1, 0, 1)] ^= 1;
+		changed[index(3, 2, 0)] ^= 1;
+		assertArrayEquals(new int[]{1, 0, 0, 3, 2, 1}, MeshCache.findChangedBox(pack(keys), changed, SIZE));
+	}
+
+	/**
+	 * Keys that a 32-bit hash of the state and the density couldn't tell apart are still different.
+	 */
+	@Test
+	public void keysThatOnlyDifferInTheirUpperBitsShouldBeChanges() {
+		var keys = keys();
+		var changed = keys.clone();
+		changed[index(2, 1, 1)] ^= 1L << 40;
+		assertArrayEquals(new int[]{2, 1, 1, 2, 1, 1}, MeshCache.findChangedBox(pack(keys), changed, SIZE));
+	}
+
+	private static long[] keys() {
+		var keys = new long[SIZE.getX() * SIZE.getY() * SIZE.getZ()];
+		for (int i = 0; i < keys.length; ++i)
+			keys[i] = (long) i << 32 | Float.floatToRawIntBits(i / 2F);
+		return keys;
+	}
+
+	private static int index(int x, int y, int z) {
+		return x + SIZE.getX() * (y + SIZE.getY() * z);
+	}
+
+	private static PackedMesh pack(long[] keys) {
+		return PackedMesh.pack(keys, keys.length, new IndexedMesh(), new float[0], new BlockState[0], new int[0]);
+	}
+
+}
@@ -0,0 +1,51 @@
+package io.github.cadiboo.nocubes.client.render;
+
+import io.github.cadiboo.nocubes.mesh.IndexedMesh;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PackedMeshTests {
+
+	@Test
+	public void normalsShouldSurvivePacking() {
+		var unpacked = new float[3];
+		float[][] normals = {{1, 0, 0}, {0, -1, 0}, {0, 0, -1}, {0.6F, -0.8F, 0}, {-0.48F, 0.6F, -0.64F}};
+		for (var normal : normals) {
+			PackedMesh.unpackNormal(PackedMesh.packNormal(normal[0], normal[1], normal[2]), unpacked, 0);
+			assertArrayEquals(normal, unpacked, 0.02F);
+		}
+		PackedMesh.unpackNormal(PackedMesh.packNormal(0, 0, 0), unpacked, 0);
+		assertArrayEquals(new float[3], unpacked, 0);
+	}
+
+	@Test
+	public void meshShouldSurvivePacking() {
+		var mesh = new IndexedMesh();
+		mesh.addVertex(0, 0, 0);
+		mesh.addVertex(17.5F, 0.25F, 1);
+		mesh.addVertex(1, 2.125F, 3);
+		mesh.addQuad(1, 2, 3, 0, 1, 2, 2);
+		var blockKeys = new long[]{5, -7, 11L << 32 | 0xFFFFFFFFL};
+		var packed = PackedMesh.pack(blockKeys, blockKeys.length, mesh, new float[]{0, 1, 0, 0, 1, 0, 0, 1, 0}, new BlockState[1], new int[]{4, -1, 6});
+
+		for (int block = 0; block < blockKeys.length; ++block)
+			assertEquals(blockKeys[block], packed.getBlockKey(block));
+		var unpacked = packed.unpackMesh(new IndexedMesh());
+		assertEquals(mesh.vertexCount, unpacked.vertexCount);
+		assertEquals(mesh.quadCount, unpacked.quadCount);
+		for (int i = 0; i < mesh.vertexCount * 3; ++i)
+			assertEquals(mesh.vertices[i], unpacked.vertices[i], 1 / 1024F);
+		for (int i = 0; i < mesh.quadCount * 4; ++i)
+			assertEquals(mesh.quads[i], unpacked.quads[i]);
+		assertEquals(new BlockPos(1, 2, 3), unpacked.getQuadPosition(0, new BlockPos.MutableBlockPos()));
+		assertEquals(new BlockPos(4, -1, 6), packed.getFoundPosition(0, new BlockPos.MutableBlockPos()));
+		var foundPositions = new int[3];
+		packed.unpackFoundStates(new BlockState[1], foundPositions);
+		assertArrayEquals(new int[]{4, -1, 6}, foundPositions);
+	}
+
+}
@@ -0,0 +1,47 @@
+package io.github.cadiboo.nocubes.collision;
+
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoxShapeBuilderTests {
+
+	@Test
+	public void emptyBuilderShouldBuildEmptyShape() {
+		assertTrue(new BoxShapeBuilder().build().isEmpty());
+	}
+
+	@Test
+	public void flatBoxesShouldBeIgnored() {
+		var builder = new BoxShapeBuilder();
+		builder.accept(0, 0, 0, 1, 0, 1);
+		assertTrue(builder.build().isEmpty());
+	}
+
+	@Test
+	public void shouldBuildTheSameShapeAsJoiningEachBox() {
+		var random = new Random(1234);
+		for (int i = 0; i < 100; ++i) {
+			var builder = new BoxShapeBuilder();
+			var joined = Shapes.empty();
+			for (int box = 0, boxes = 1 + random.nextInt(20); box < boxes; ++box) {
+				double x0 = random.nextFloat() * 2 - 1, y0 = random.nextFloat() * 2 - 1, z0 = random.nextFloat() * 2 - 1;
+				double x1 = x0 + random.nextFloat(), y1 = y0 + random.nextFloat(), z1 = z0 + random.nextFloat();
+				builder.accept(x0, y0, z0, x1, y1, z1);
+				joined = Shapes.joinUnoptimized(joined, Shapes.box(x0, y0, z0, x1, y1, z1), BooleanOp.OR);
+			}
+			assertSameShape(joined, builder.build());
+		}
+	}
+
+	private static void assertSameShape(VoxelShape expected, VoxelShape actual) {
+		assertFalse(Shapes.joinIsNotEmpty(expected, actual, BooleanOp.NOT_SAME));
+	}
+
+}
@@ -0,0 +1,191 @@
+package io.github.cadiboo.nocubes.collision;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction.Axis;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SectionCollisionsTests {
+
+	private static final int SIZE = 16;
+	/** The section and the blocks around it. */
+	private static final int AREA_SIZE = SIZE + 2;
+
+	@Test
+	public void boxesShouldOnlyBeCutOffAtSmoothableNeighbours() {
+		var smoothable = new boolean[AREA_SIZE * AREA_SIZE * AREA_SIZE];
+		// A row of 3 smoothable blocks with air above them
+		for (int x = 0; x < 3; ++x)
+			smoothable[areaIndex(x, 0, 0)] = true;
+		var builder = new SectionCollisions.Builder(0, 0, 0);
+		builder.accept(0, 0, 0, 3, 1.5, 1);
+		var collisions = build(builder, smoothable);
+
+		var middle = getBoxes(collisions, 1, 0, 0);
+		assertEquals(1, middle.size());
+		assertBox(new double[]{0, 0, 0, 1, 1.5, 1}, middle.get(0));
+		var end = getBoxes(collisions, 2, 0, 0);
+		assertEquals(1, end.size());
+		assertBox(new double[]{0, 0, 0, 1, 1.5, 1}, end.get(0));
+	}
+
+	/**
+	 * Vanilla only asks for the shapes of smoothable blocks, so together they have to cover every box, including the
+	 * parts that stick out into blocks that aren't smoothable.
+	 */
+	@Test
+	public void smoothableBlocksShouldCoverTheUnclippedBoxes() {
+		var random = new Random(1234);
+		for (int i = 0; i < 20; ++i) {
+			var smoothable = new boolean[AREA_SIZE * AREA_SIZE * AREA_SIZE];
+			for (int block = 0; block < smoothable.length; ++block)
+				smoothable[block] = random.nextInt(3) == 0;
+			var original = new ArrayList<double[]>();
+			var builder = new SectionCollisions.Builder(0, 0, 0);
+			for (int box = 0; box < 200; ++box) {
+				// Every box intersects a smoothable block in the section, like the boxes from a mesher
+				int x, y, z;
+				do {
+					x = random.nextInt(SIZE);
+					y = random.nextInt(SIZE);
+					z = random.nextInt(SIZE);
+				} while (!smoothable[areaIndex(x, y, z)]);
+				var b = new double[6];
+				int[] block = {x, y, z};
+				for (int axis = 0; axis < 3; ++axis) {
+					b[axis] = block[axis] + (random.nextInt(8) - 4) / 4D;
+					b[axis + 3] = Math.max(b[axis] + (1 + random.nextInt(10)) / 4D, block[axis] + 0.25);
+				}
+				original.add(b);
+				builder.accept(b[0], b[1], b[2], b[3], b[4], b[5]);
+			}
+			var collisions = build(builder, smoothable);
+			var queried = new ArrayList<double[]>();
+			for (int y = 0; y < SIZE; ++y)
+				for (int z = 0; z < SIZE; ++z)
+					for (int x = 0; x < SIZE; ++x)
+						if (smoothable[areaIndex(x, y, z)])
+							for (var box : getBoxes(collisions, x, y, z))
+								queried.add(new double[]{box[0] + x, box[1] + y, box[2] + z, box[3] + x, box[4] + y, box[5] + z});
+			for (int sample = 0; sample < 10000; ++sample) {
+				// Offset from the grid so that points are never on the edge of a box
+				double x = random.nextInt(SIZE * 4) / 4D + 0.0625 + random.nextDouble() / 8;
+				double y = random.nextInt(SIZE * 4) / 4D + 0.0625 + random.nextDouble() / 8;
+				double z = random.nextInt(SIZE * 4) / 4D + 0.0625 + random.nextDouble() / 8;
+				assertEquals("(" + x + ", " + y + ", " + z + ")", isInside(original, x, y, z), isInside(queried, x, y, z));
+			}
+		}
+	}
+
+	@Test
+	public void sweepShouldMatchCollidingWithEachBox() {
+		var random = new Random(1234);
+		// The boxes are relative to the section, the AABBs and shapes aren't
+		var sectionStart = new BlockPos(-16, 32, 160);
+		for (int i = 0; i < 20; ++i) {
+			var shapes = new ArrayList<VoxelShape>();
+			var builder = new SectionCollisions.Builder(0, 0, 0);
+			for (int box = 0; box < 100; ++box) {
+				double x0 = random.nextInt(SIZE * 4) / 4D, y0 = random.nextInt(SIZE * 4) / 4D, z0 = random.nextInt(SIZE * 4) / 4D;
+				double x1 = Math.min(x0 + (1 + random.nextInt(12)) / 4D, SIZE), y1 = Math.min(y0 + (1 + random.nextInt(12)) / 4D, SIZE), z1 = Math.min(z0 + (1 + random.nextInt(12)) / 4D, SIZE);
+				shapes.add(Shapes.box(x0, y0, z0, x1, y1, z1).move(sectionStart.getX(), sectionStart.getY(), sectionStart.getZ()));
+				builder.accept(x0, y0, z0, x1, y1, z1);
+			}
+			var collisions = build(builder, new boolean[AREA_SIZE * AREA_SIZE * AREA_SIZE]);
+			for (int query = 0; query < 1000; ++query) {
+				double x = random.nextDouble() * SIZE, y = random.nextDouble() * SIZE, z = random.nextDouble() * SIZE;
+				var aabb = new AABB(x, y, z, x + 0.2 + random.nextDouble() * 2, y + 0.2 + random.nextDouble() * 2, z + 0.2 + random.nextDouble() * 2)
+					.move(sectionStart.getX(), sectionStart.getY(), sectionStart.getZ());
+				var axis = Axis.values()[random.nextInt(3)];
+				var motion = (random.nextDouble() - 0.5) * 8;
+				var expected = Shapes.collide(axis, aabb, shapes, motion);
+				var actual = collisions.collide(axis, aabb, motion, sectionStart, 0, SIZE - 1, 0, SIZE - 1, 0, SIZE - 1);
+				assertEquals(aabb + " moving " + motion + " along " + axis, expected, actual, 1.0E-6);
+			}
+		}
+	}
+
+	/**
+	 * Entities walking and falling on terrain-like ground, where most queries should be answered by the heightfield.
+	 */
+	@Test
+	public void heightsShouldMatchTheSweep() {
+		var random = new Random(1234);
+		var sectionStart = new BlockPos(-16, 32, 160);
+		int queries = 0, answered = 0;
+		for (int i = 0; i < 20; ++i) {
+			var shapes = new ArrayList<VoxelShape>();
+			var builder = new SectionCollisions.Builder(0, 0, 0);
+			var ground = new double[SIZE * SIZE];
+			for (int z = 0; z < SIZE; ++z) {
+				for (int x = 0; x < SIZE; ++x) {
+					// Rolling hills with the odd step and sloped bit, like the boxes from a mesher
+					var height = ground[z * SIZE + x] = Math.floor((6 + Math.sin(x / 3D + i) * 2 + Math.cos(z / 4D) * 2) * 4) / 4 + (random.nextInt(8) == 0 ? 1 : 0);
+					addBox(builder, shapes, sectionStart, x, 0, z, x + 1, height, z + 1);
+					// Not lined up with the heightfield's columns
+					if (random.nextInt(4) == 0)
+						addBox(builder, shapes, sectionStart, x + random.nextDouble() / 2, height, z, x + 0.5 + random.nextDouble() / 2, height + random.nextDouble() / 2, z + random.nextDouble());
+				}
+			}
+			var collisions = build(builder, new boolean[AREA_SIZE * AREA_SIZE * AREA_SIZE]);
+			for (int query = 0; query < 1000; ++query, ++queries) {
+				double x = 0.5 + random.nextDouble() * (SIZE - 2), z = 0.5 + random.nextDouble() * (SIZE - 2);
+				double y = ground[Math.min((int) z, SIZE - 1) * SIZE + Math.min((int) x, SIZE - 1)] + (random.nextBoolean() ? 0 : random.nextDouble());
+				var aabb = new AABB(x, y, z, x + 0.6, y + 1.8, z + 0.6).move(sectionStart.getX(), sectionStart.getY(), sectionStart.getZ());
+				var axis = Axis.values()[random.nextInt(3)];
+				var motion = axis == Axis.Y ? -random.nextDouble() : (random.nextDouble() - 0.5) * 0.6;
+				var fromHeights = collisions.collideWithHeights(axis, aabb, motion, sectionStart);
+				var expected = Shapes.collide(axis, aabb, shapes, motion);
+				if (!Double.isNaN(fromHeights)) {
+					++answered;
+					assertEquals(aabb + " moving " + motion + " along " + axis, expected, fromHeights, 1.0E-6);
+				}
+				var actual = collisions.collide(axis, aabb, motion, sectionStart, 0, SIZE - 1, 0, SIZE - 1, 0, SIZE - 1);
+				assertEquals(aabb + " moving " + motion + " along " + axis, expected, actual, 1.0E-6);
+			}
+		}
+		assertTrue(answered + " of " + queries + " queries were answered by the heightfield", answered > queries / 4);
+	}
+
+	private static void addBox(SectionCollisions.Builder builder, List<VoxelShape> shapes, BlockPos sectionStart, double x0, double y0, double z0, double x1, double y1, double z1) {
+		shapes.add(Shapes.box(x0, y0, z0, x1, y1, z1).move(sectionStart.getX(), sectionStart.getY(), sectionStart.getZ()));
+		builder.accept(x0, y0, z0, x1, y1, z1);
+	}
+
+	private static int areaIndex(int x, int y, int z) {
+		return ((z + 1) * AREA_SIZE + y + 1) * AREA_SIZE + x + 1;
+	}
+
+	private static SectionCollisions build(SectionCollisions.Builder builder, boolean[] smoothable) {
+		var sides = SectionCollisions.findSmoothableSides(index -> smoothable[index], AREA_SIZE, AREA_SIZE, 1, 1, 1);
+		return builder.build(null, 0, new long[3 * 3 * 3], 0, sides);
+	}
+
+	private static List<double[]> getBoxes(SectionCollisions collisions, int x, int y, int z) {
+		var boxes = new ArrayList<double[]>();
+		collisions.forEachBoxInBlock(x, y, z, (x0, y0, z0, x1, y1, z1) -> boxes.add(new double[]{x0, y0, z0, x1, y1, z1}));
+		return boxes;
+	}
+
+	private static boolean isInside(List<double[]> boxes, double x, double y, double z) {
+		for (var box : boxes)
+			if (x > box[0] && x < box[3] && y > box[1] && y < box[4] && z > box[2] && z < box[5])
+				return true;
+		return false;
+	}
+
+	private static void assertBox(double[] expected, double[] actual) {
+		for (int i = 0; i < 6; ++i)
+			assertEquals(expected[i], actual[i], 0);
+	}
+
+}
@@ -0,0 +1,94 @@
+package io.github.cadiboo.nocubes.collision;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShapeMergerTests {
+
+	@Test
+	public void rowOfCubesShouldBeMergedIntoOneBox() {
+		var merged = new ArrayList<double[]>();
+		var merger = new ShapeMerger(collectInto(merged));
+		for (int x = 0; x < 5; ++x)
+			assertTrue(ShapeConsumer.acceptFullCube(x, 0, 0, merger));
+		assertTrue(merger.finish());
+		assertEquals(1, merged.size());
+		assertBox(new double[]{0, 0, 0, 5, 1, 1}, merged.get(0));
+	}
+
+	@Test
+	public void boxesInsideOtherBoxesShouldBeDropped() {
+		var merged = new ArrayList<double[]>();
+		var merger = new ShapeMerger(collectInto(merged));
+		assertTrue(merger.accept(0.25, 0.25, 0.25, 0.5, 0.5, 0.5));
+		assertTrue(merger.accept(0, 0, 0, 1, 1, 1));
+		assertTrue(merger.accept(0.5, 0, 0.5, 1, 0.5, 1));
+		assertTrue(merger.finish());
+		assertEquals(1, merged.size());
+		assertBox(new double[]{0, 0, 0, 1, 1, 1}, merged.get(0));
+	}
+
+	@Test
+	public void shouldStopWhenTheConsumerDoes() {
+		var merger = new ShapeMerger((x0, y0, z0, x1, y1, z1) -> false);
+		// Boxes that can't be merged, so they are passed on once there are too many to hold back
+		boolean accepted = true;
+		for (int i = 0; i < 100 && accepted; ++i)
+			accepted = merger.accept(i * 2, 0, 0, i * 2 + 1, 1, 1);
+		assertFalse(accepted);
+		assertFalse(merger.finish());
+	}
+
+	/**
+	 * Samples lots of points to check that the merged boxes cover exactly the same space as the original ones.
+	 * The boxes are snapped to a grid so that lots of them line up and get merged, like the boxes from a mesher.
+	 */
+	@Test
+	public void unionShouldBeTheSameAfterMerging() {
+		var random = new Random(1234);
+		for (int i = 0; i < 100; ++i) {
+			var original = new ArrayList<double[]>();
+			var merged = new ArrayList<double[]>();
+			var merger = new ShapeMerger(collectInto(merged));
+			for (int box = 0, boxes = 1 + random.nextInt(40); box < boxes; ++box) {
+				double x0 = random.nextInt(8) / 2D, y0 = random.nextInt(8) / 2D, z0 = random.nextInt(8) / 2D;
+				double x1 = x0 + (1 + random.nextInt(4)) / 2D, y1 = y0 + (1 + random.nextInt(4)) / 2D, z1 = z0 + (1 + random.nextInt(4)) / 2D;
+				original.add(new double[]{x0, y0, z0, x1, y1, z1});
+				assertTrue(merger.accept(x0, y0, z0, x1, y1, z1));
+			}
+			assertTrue(merger.finish());
+			assertTrue("Merging should never add boxes", merged.size() <= original.size());
+			for (int sample = 0; sample < 1000; ++sample) {
+				// Offset from the grid so that points are never on the edge of a box
+				double x = random.nextInt(12) / 2D + 0.125 + random.nextDouble() / 4;
+				double y = random.nextInt(12) / 2D + 0.125 + random.nextDouble() / 4;
+				double z = random.nextInt(12) / 2D + 0.125 + random.nextDouble() / 4;
+				assertEquals("(" + x + ", " + y + ", " + z + ")", isInside(original, x, y, z), isInside(merged, x, y, z));
+			}
+		}
+	}
+
+	private static ShapeConsumer collectInto(List<double[]> boxes) {
+		return (x0, y0, z0, x1, y1, z1) -> boxes.add(new double[]{x0, y0, z0, x1, y1, z1});
+	}
+
+	private static boolean isInside(List<double[]> boxes, double x, double y, double z) {
+		for (var box : boxes)
+			if (x > box[0] && x < box[3] && y > box[1] && y < box[4] && z > box[2] && z < box[5])
+				return true;
+		return false;
+	}
+
+	private static void assertBox(double[] expected, double[] actual) {
+		for (int i = 0; i < 6; ++i)
+			assertEquals(expected[i], actual[i], 0);
+	}
+
+}
@@ -2,12 +2,18 @@ package io.github.cadiboo.nocubes.integrationtesting;
 
 import io.github.cadiboo.nocubes.NoCubes;
 import io.github.cadiboo.nocubes.config.NoCubesConfig.Server.MesherType;
+import io.github.cadiboo.nocubes.mesh.CullingCubic;
+import io.github.cadiboo.nocubes.mesh.Mesher;
+import io.github.cadiboo.nocubes.mesh.StupidCubic;
 import io.github.cadiboo.nocubes.util.Area;
 import io.github.cadiboo.nocubes.util.Face;
+import io.github.cadiboo.nocubes.util.Vec;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.BlockPos.MutableBlockPos;
 import net.minecraft.world.level.block.state.BlockState;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.function.Predicate;
 
 import static net.minecraft.world.level.block.Blocks.*;
@@ -37,6 +43,7 @@ final class NoCubesTests {
 			}),
 			test("area sanity check", NoCubesTests::areaSanityCheck),
 			test("mesher sanity check", NoCubesTests::mesherSanityCheck),
+			test("merged faces should cover the same area as unmerged faces", NoCubesTests::mergedFacesShouldCoverTheUnmergedFaces),
 		};
 	}
 
@@ -72,6 +79,70 @@ final class NoCubesTests {
 			mesher.instance.generateGeometry(area, isSmoothable, NoCubesTests::checkAndMutate);
 	}
 
+	private static void mergedFacesShouldCoverTheUnmergedFaces() {
+		Predicate<BlockState> isSmoothable = $ -> $ == STONE.defaultBlockState() || $ == DIRT.defaultBlockState();
+
+		var size = new BlockPos(8, 8, 8);
+		var area = new Area(null, new BlockPos(100, 50, 25), size) {
+			@Override
+			public BlockState[] getAndCacheBlocks() {
+				BlockState[] states = new BlockState[numBlocks()];
+				int i = 0;
+				for (int z = 0; z < size.getZ(); ++z)
+					for (int y = 0; y < size.getY(); ++y)
+						for (int x = 0; x < size.getX(); ++x, ++i)
+							// Big flat areas of stone, some dirt and a few holes so that there are faces that can't be merged
+							states[i] = y > 4 || (x + y * 3 + z * 5) % 11 == 0 ? AIR.defaultBlockState() : (x < 5 && z > 2 ? STONE : DIRT).defaultBlockState();
+				return states;
+			}
+
+			@Override
+			public void close() {
+				// No-op
+			}
+		};
+		// Stands in for the light, which splits merged faces in two
+		Mesher.FaceMergeKey mergeKey = (state, relativePos, direction) -> relativePos.getZ() < 4 ? 0 : 1;
+		for (var mesherType : MesherType.values()) {
+			var mesher = mesherType.instance;
+			var unmerged = new ArrayList<String>();
+			mesher.generateGeometry(area, isSmoothable, (pos, face) -> unmerged.add(describe(pos, face)));
+			var split = new ArrayList<String>();
+			var mergedCount = new int[1];
+			var mergedArea = new float[1];
+			var blockPos = new MutableBlockPos();
+			var blockFace = new Face();
+			mesher.generateGeometryMerged(area, isSmoothable, mergeKey, (pos, face) -> {
+				++mergedCount[0];
+				mergedArea[0] += getArea(face);
+				return Mesher.forEachBlockFace(pos, face, blockPos, blockFace, (splitPos, splitFace) -> split.add(describe(splitPos, splitFace)));
+			});
+			Collections.sort(unmerged);
+			Collections.sort(split);
+			assertTrue(unmerged.equals(split));
+			if (mesher instanceof StupidCubic || mesher instanceof CullingCubic) {
+				assertTrue(mergedCount[0] < unmerged.size());
+				// Each unmerged face covers one block
+				assertTrue(mergedArea[0] == unmerged.size());
+			}
+		}
+	}
+
+	private static String describe(BlockPos pos, Face face) {
+		var description = new StringBuilder(pos.toShortString());
+		for (var vertex : new Vec[]{face.v0, face.v1, face.v2, face.v3})
+			description.append(' ').append(vertex.x).append(' ').append(vertex.y).append(' ').append(vertex.z);
+		return description.toString();
+	}
+
+	/**
+	 * Only for the axis aligned rectangles that the cubic meshers generate.
+	 */
+	private static float getArea(Face face) {
+		float dx = Math.abs(face.v0.x - face.v2.x), dy = Math.abs(face.v0.y - face.v2.y), dz = Math.abs(face.v0.z - face.v2.z);
+		return dx == 0 ? dy * dz : dy == 0 ? dx * dz : dx * dy;
+	}
+
 	private static boolean checkAndMutate(MutableBlockPos pos, Face face) {
 		assertFalse(pos.getX() < 0);
 		assertFalse(pos.getX() >= 5);
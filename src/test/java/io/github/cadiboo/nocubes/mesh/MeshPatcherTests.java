@@ -0,0 +1,199 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.mesh.SDFMesher.FullCellAction;
+import io.github.cadiboo.nocubes.mesh.TestData.TestMesh;
+import io.github.cadiboo.nocubes.util.DensityArea;
+import io.github.cadiboo.nocubes.util.ModUtil;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.BlockPos.MutableBlockPos;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that patching a mesh after some blocks change gives the same faces as meshing the whole area again.
+ */
+public class MeshPatcherTests {
+
+	private static final TestMesh[] MESHES = {TestData.SPHERE, TestData.TORUS, TestData.SINE_WAVES, TestData.TERRAIN};
+
+	@Test
+	public void patchingInsideTheAreaShouldBeTheSameAsRemeshing() {
+		for (var smoother : new boolean[]{false, true})
+			for (var testMesh : MESHES)
+				assertTrue(assertPatchedIsRemeshed(testMesh, smoother, middle(testMesh.dimensions)));
+	}
+
+	@Test
+	public void patchingOnTheFacesOfTheAreaShouldBeTheSameAsRemeshing() {
+		for (var smoother : new boolean[]{false, true}) {
+			for (var testMesh : MESHES) {
+				var size = testMesh.dimensions;
+				var middle = middle(size);
+				assertTrue(assertPatchedIsRemeshed(testMesh, smoother, new int[]{0, middle[1], middle[2], 1, middle[4], middle[5]}));
+				assertTrue(assertPatchedIsRemeshed(testMesh, smoother, new int[]{middle[0], size.getY() - 1, middle[2], middle[3], size.getY() - 1, middle[5]}));
+				// On an edge between two faces
+				assertTrue(assertPatchedIsRemeshed(testMesh, smoother, new int[]{middle[0], 0, size.getZ() - 2, middle[3], 1, size.getZ() - 1}));
+			}
+		}
+	}
+
+	/**
+	 * Changing blocks in the corners doesn't always change the mesh (there are no faces on the outside of the area).
+	 */
+	@Test
+	public void patchingInTheCornersOfTheAreaShouldBeTheSameAsRemeshing() {
+		var changedAny = false;
+		for (var smoother : new boolean[]{false, true}) {
+			for (var testMesh : MESHES) {
+				var size = testMesh.dimensions;
+				changedAny |= assertPatchedIsRemeshed(testMesh, smoother, new int[]{0, 0, 0, 0, 0, 0});
+				changedAny |= assertPatchedIsRemeshed(testMesh, smoother, new int[]{size.getX() - 2, size.getY() - 3, size.getZ() - 1, size.getX() - 1, size.getY() - 1, size.getZ() - 1});
+			}
+		}
+		assertTrue(changedAny);
+	}
+
+	/**
+	 * Sections can be meshed as part of a column of sections (see MeshRenderer#meshColumn) and then extracted from it.
+	 */
+	@Test
+	public void extractingSectionsFromAColumnShouldBeTheSameAsMeshingThem() {
+		var sectionSize = ModUtil.CHUNK_SIZE;
+		int sections = 2;
+		for (var mesher : new SDFMesher[]{new SurfaceNets(false), new SurfaceNets(true), new MarchingCubes(false), new MarchingCubes(true)}) {
+			for (var testMesh : new TestMesh[]{TestData.SINE_WAVES, TestData.NODAL_CUBIC}) {
+				var densities = DensityArea.toDensities(testMesh.generateDistanceField(0, 0, 0));
+				var columnSize = extend(mesher, new BlockPos(sectionSize.getX(), sectionSize.getY() * sections, sectionSize.getZ()));
+				// In the middle of the test mesh, so that there are faces in every section
+				var columnStart = new BlockPos((testMesh.dimensions.getX() - columnSize.getX()) / 2, 0, (testMesh.dimensions.getZ() - columnSize.getZ()) / 2);
+				var column = new DensityArea(densities, testMesh.dimensions, columnStart, columnSize);
+				var columnMesh = new IndexedMesh();
+				mesher.generateIndexedGeometry(column, state -> true, columnMesh);
+				for (int i = 0; i < sections; ++i) {
+					int offsetY = sectionSize.getY() * i;
+					var areaSize = extend(mesher, sectionSize);
+					var expected = new IndexedMesh();
+					mesher.generateIndexedGeometry(column.copyOfRange(new BlockPos(0, offsetY, 0), areaSize), state -> true, expected);
+					var extracted = new IndexedMesh();
+					MeshPatcher.extractSection(
+						columnMesh, offsetY, sectionSize.getY() + 1, areaSize,
+						(start, size, mesh) -> mesher.generateIndexedGeometry(column.copyOfRange(start.above(offsetY), size), state -> true, mesh),
+						extracted
+					);
+					var message = mesher.getClass().getSimpleName() + " " + testMesh.dimensions + " section " + i;
+					assertTrue(message, expected.quadCount > 0);
+					assertEquals(message, describeQuads(expected), describeQuads(extracted));
+					assertEquals(message, countUsedVertices(expected), countUsedVertices(extracted));
+				}
+			}
+		}
+	}
+
+	private static BlockPos extend(Mesher mesher, BlockPos size) {
+		return size.offset(mesher.getNegativeAreaExtension()).offset(mesher.getPositiveAreaExtension());
+	}
+
+	/**
+	 * A box of 2x3x2 blocks in the middle of the area.
+	 */
+	private static int[] middle(BlockPos size) {
+		int x = size.getX() / 2, y = size.getY() / 2, z = size.getZ() / 2;
+		return new int[]{x, y, z, x + 1, y + 2, z + 1};
+	}
+
+	/**
+	 * Flips the blocks in the box between solid and air, then patches the old mesh and checks it against a new one.
+	 *
+	 * @param changed The box (min x, y, z then max x, y, z, all inclusive) of blocks to change
+	 * @return If the mesh changed
+	 */
+	private static boolean assertPatchedIsRemeshed(TestMesh testMesh, boolean smoother, int[] changed) {
+		var size = testMesh.dimensions;
+		// Block densities are between -1 and 1
+		var densities = testMesh.generateDistanceField(0, 0, 0);
+		for (int i = 0; i < densities.length; ++i)
+			densities[i] = Math.max(-1, Math.min(1, densities[i]));
+		var old = new IndexedMesh();
+		mesh(densities, size, smoother, BlockPos.ZERO, size, old);
+
+		for (int z = changed[2]; z <= changed[5]; ++z)
+			for (int y = changed[1]; y <= changed[4]; ++y)
+				for (int x = changed[0]; x <= changed[3]; ++x) {
+					int index = ModUtil.get3dIndexInto1dArray(x, y, z, size.getX(), size.getY());
+					densities[index] = densities[index] > 0 ? -1 : 1;
+				}
+		var remeshed = new IndexedMesh();
+		mesh(densities, size, smoother, BlockPos.ZERO, size, remeshed);
+		var patched = new IndexedMesh();
+		var sources = MeshPatcher.patch(old, size, changed, (start, subSize, mesh) -> mesh(densities, size, smoother, start, subSize, mesh), patched);
+
+		var message = testMesh.dimensions + (smoother ? " smoother" : "") + " changed at " + changed[0] + ", " + changed[1] + ", " + changed[2];
+		var expected = describeQuads(remeshed);
+		assertEquals(message, expected, describeQuads(patched));
+		// Vertices shared between copied and regenerated faces are welded back together
+		assertEquals(message, countUsedVertices(remeshed), countUsedVertices(patched));
+		var pos = new MutableBlockPos();
+		var oldPos = new MutableBlockPos();
+		for (int quad = 0; quad < patched.quadCount; ++quad)
+			if (sources[quad] != -1)
+				assertEquals(message, old.getQuadPosition(sources[quad], oldPos), patched.getQuadPosition(quad, pos));
+		return !expected.equals(describeQuads(old));
+	}
+
+	/**
+	 * Meshers may add vertices that no faces use (e.g. on the edges of the area), the patch only copies used ones.
+	 */
+	private static int countUsedVertices(IndexedMesh mesh) {
+		var used = new boolean[mesh.vertexCount];
+		int count = 0;
+		for (int i = 0, end = mesh.quadCount * 4; i < end; ++i) {
+			if (!used[mesh.quads[i]]) {
+				used[mesh.quads[i]] = true;
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Meshes part of the area like {@link SurfaceNets#generateIndexedGeometry} would mesh a copy of it.
+	 */
+	private static void mesh(float[] densities, BlockPos areaSize, boolean smoother, BlockPos start, BlockPos size, IndexedMesh mesh) {
+		var copy = new float[ModUtil.length(size)];
+		int index = 0;
+		for (int z = 0; z < size.getZ(); ++z)
+			for (int y = 0; y < size.getY(); ++y)
+				for (int x = 0; x < size.getX(); ++x)
+					copy[index++] = densities[ModUtil.get3dIndexInto1dArray(start.getX() + x, start.getY() + y, start.getZ() + z, areaSize.getX(), areaSize.getY())];
+		var dims = smoother ? size.offset(-1, -1, -1) : size;
+		var field = smoother ? SDFMesher.averageCorners(copy, size, new float[ModUtil.length(dims)], false) : SDFMesher.negate(copy, copy.length, false);
+		SurfaceNets.generateOrThrow2(field, dims, smoother ? 1F : 0.5F, FullCellAction.IGNORE, null, mesh, SDFMesher.summariseBricks(field, dims));
+	}
+
+	/**
+	 * The position and corners of each quad, sorted because the patched (or extracted) faces are in a different order.
+	 */
+	private static List<String> describeQuads(IndexedMesh mesh) {
+		var quads = new ArrayList<String>();
+		var pos = new MutableBlockPos();
+		for (int quad = 0; quad < mesh.quadCount; ++quad) {
+			var description = new StringBuilder().append(mesh.getQuadPosition(quad, pos).toShortString());
+			for (int corner = 0; corner < 4; ++corner) {
+				int pointer = mesh.quads[quad * 4 + corner] * 3;
+				// Rounded because the vertices of the patch (or column) are generated relative to a different start
+				for (int axis = 0; axis < 3; ++axis)
+					description.append(' ').append(Math.round(mesh.vertices[pointer + axis] * 256));
+			}
+			quads.add(description.toString());
+		}
+		Collections.sort(quads);
+		return quads;
+	}
+
+}
@@ -0,0 +1,127 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.mesh.TestData.TestMesh;
+import io.github.cadiboo.nocubes.util.DensityArea;
+import io.github.cadiboo.nocubes.util.Vec;
+import net.minecraft.core.BlockPos;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that splitting an area into slabs and meshing them in parallel gives the same output as meshing it all at once.
+ */
+public class ParallelMesherTests {
+
+	private static final TestMesh[] MESHES = {TestData.BIG_SPHERE, TestData.SINE_WAVES, TestData.TERRAIN};
+	private static final int THREADS = 4;
+
+	@Test
+	public void facesShouldBeTheSameAsMeshingOnOneThread() {
+		var pool = new ForkJoinPool(THREADS);
+		try {
+			for (var mesher : meshers()) {
+				for (var testMesh : MESHES) {
+					var area = createArea(testMesh);
+					var expected = describeFaces(mesher, area);
+					var actual = describeFaces(new ParallelMesher(mesher, pool), area);
+					var message = mesher.getClass().getSimpleName() + " " + testMesh.dimensions;
+					assertEquals(message, expected, actual);
+					// The faces in the cells on either side of the first border between slabs come from different slabs
+					int border = getFirstSlabBorder(mesher, area);
+					assertTrue(message, countFacesAt(expected, border - 1) > 0 && countFacesAt(expected, border) > 0);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Shapes can't be merged across the borders between slabs, so only the space they cover is compared.
+	 */
+	@Test
+	public void collisionsShouldCoverTheSameSpaceAsMeshingOnOneThread() {
+		var pool = new ForkJoinPool(THREADS);
+		var random = new Random(1234);
+		try {
+			for (var mesher : meshers()) {
+				for (var testMesh : MESHES) {
+					var area = createArea(testMesh);
+					var expected = new ArrayList<double[]>();
+					mesher.generateCollisions(area, state -> true, (x0, y0, z0, x1, y1, z1) -> expected.add(new double[]{x0, y0, z0, x1, y1, z1}));
+					var actual = new ArrayList<double[]>();
+					new ParallelMesher(mesher, pool).generateCollisions(area, state -> true, (x0, y0, z0, x1, y1, z1) -> actual.add(new double[]{x0, y0, z0, x1, y1, z1}));
+					var message = mesher.getClass().getSimpleName() + " " + testMesh.dimensions;
+					assertTrue(message, !expected.isEmpty());
+					var size = area.size;
+					for (int sample = 0; sample < 20000; ++sample) {
+						double x = random.nextDouble() * size.getX(), y = random.nextDouble() * size.getY(), z = random.nextDouble() * size.getZ();
+						assertEquals(message + " (" + x + ", " + y + ", " + z + ")", isInside(expected, x, y, z), isInside(actual, x, y, z));
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static Mesher[] meshers() {
+		return new Mesher[]{new SurfaceNets(false), new SurfaceNets(true), new MarchingCubes(false), new MarchingCubes(true)};
+	}
+
+	private static DensityArea createArea(TestMesh testMesh) {
+		var size = testMesh.dimensions;
+		return new DensityArea(DensityArea.toDensities(testMesh.generateDistanceField(0, 0, 0)), size, BlockPos.ZERO, size);
+	}
+
+	/**
+	 * Where the second slab starts, worked out the same way as ParallelMesher does.
+	 */
+	private static int getFirstSlabBorder(Mesher mesher, DensityArea area) {
+		int meshSizeZ = area.size.getZ() - mesher.getNegativeAreaExtension().getZ() - mesher.getPositiveAreaExtension().getZ();
+		int slabs = Math.min(THREADS, meshSizeZ / ParallelMesher.MIN_SLAB_SIZE);
+		assertTrue("The area should be split", slabs >= 2);
+		return meshSizeZ / slabs;
+	}
+
+	/**
+	 * The position and corners of each face, sorted so that the order they were generated in doesn't matter.
+	 */
+	private static List<String> describeFaces(Mesher mesher, DensityArea area) {
+		var faces = new ArrayList<String>();
+		mesher.generateGeometry(area, state -> true, (pos, face) -> {
+			var description = new StringBuilder().append(pos.getZ()).append(' ').append(pos.getY()).append(' ').append(pos.getX());
+			for (var vertex : new Vec[]{face.v0, face.v1, face.v2, face.v3})
+				description.append(' ').append(Math.round(vertex.x * 256)).append(' ').append(Math.round(vertex.y * 256)).append(' ').append(Math.round(vertex.z * 256));
+			faces.add(description.toString());
+			return true;
+		});
+		Collections.sort(faces);
+		return faces;
+	}
+
+	private static int countFacesAt(List<String> faces, int z) {
+		var prefix = z + " ";
+		int count = 0;
+		for (var face : faces)
+			if (face.startsWith(prefix))
+				++count;
+		return count;
+	}
+
+	private static boolean isInside(List<double[]> boxes, double x, double y, double z) {
+		for (var box : boxes)
+			if (x > box[0] && x < box[3] && y > box[1] && y < box[4] && z > box[2] && z < box[5])
+				return true;
+		return false;
+	}
+
+}
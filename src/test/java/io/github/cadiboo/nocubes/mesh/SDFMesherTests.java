@@ -0,0 +1,170 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import io.github.cadiboo.nocubes.mesh.SDFMesher.FullCellAction;
+import io.github.cadiboo.nocubes.mesh.TestData.TestMesh;
+import io.github.cadiboo.nocubes.util.Vec;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.BlockPos.MutableBlockPos;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the shortcuts the meshers take (skipping bricks and sharing edge vertices) don't change their output.
+ */
+public class SDFMesherTests {
+
+	private static final TestMesh[] MESHES = {TestData.SPHERE, TestData.TORUS, TestData.BIG_SPHERE, TestData.SINE_WAVES, TestData.TERRAIN, TestData.HALF_OFFSET_PYRAMID};
+
+	@Test
+	public void surfaceNetsShouldBeTheSameWithoutBrickSkipping() {
+		for (var testMesh : MESHES) {
+			var field = testMesh.generateDistanceField(0, 0, 0);
+			var dims = testMesh.dimensions;
+			var skipping = new IndexedMesh();
+			SurfaceNets.generateOrThrow2(field, dims, 0.5F, FullCellAction.IGNORE, null, skipping, SDFMesher.summariseBricks(field, dims));
+			var notSkipping = new IndexedMesh();
+			SurfaceNets.generateOrThrow2(field, dims, 0.5F, FullCellAction.IGNORE, null, notSkipping, noBricks(dims));
+			assertSameQuads(notSkipping, skipping);
+		}
+	}
+
+	@Test
+	public void marchingCubesShouldBeTheSameWithoutBrickSkipping() {
+		for (var testMesh : MESHES) {
+			var field = testMesh.generateDistanceField(0, 0, 0);
+			var dims = testMesh.dimensions;
+			var skipping = new IndexedMesh();
+			MarchingCubes.generateOrThrow2(field, dims, 0.5F, FullCellAction.IGNORE, null, skipping, SDFMesher.summariseBricks(field, dims));
+			var notSkipping = new IndexedMesh();
+			MarchingCubes.generateOrThrow2(field, dims, 0.5F, FullCellAction.IGNORE, null, notSkipping, noBricks(dims));
+			assertSameQuads(notSkipping, skipping);
+		}
+	}
+
+	@Test
+	public void marchingCubesShouldBeTheSameAsWithoutSharedEdges() {
+		for (var testMesh : MESHES) {
+			var field = testMesh.generateDistanceField(0, 0, 0);
+			var dims = testMesh.dimensions;
+			var shared = new IndexedMesh();
+			MarchingCubes.generateOrThrow2(field, dims, 0.5F, FullCellAction.IGNORE, null, shared, SDFMesher.summariseBricks(field, dims));
+			var unshared = generateMarchingCubesWithoutSharedEdges(field, dims, 0.5F);
+			assertSameQuads(unshared, shared);
+			assertTrue("Edges should be shared", shared.vertexCount < unshared.vertexCount);
+		}
+	}
+
+	/**
+	 * Runs the vectorised paths even if SIMD isn't supported on this CPU, they still give the same results.
+	 */
+	@Test
+	public void vectorisedFieldsShouldBeTheSameAsScalar() {
+		for (var testMesh : MESHES) {
+			var dims = testMesh.dimensions;
+			// Densities are between -1 and 1, the test meshes have some blocks that are partly full (like snow layers)
+			var densities = testMesh.generateDistanceField(0, 0, 0);
+			for (int i = 0; i < densities.length; ++i)
+				densities[i] = Math.max(-1, Math.min(1, densities[i]));
+			var fieldLength = (dims.getX() - 1) * (dims.getY() - 1) * (dims.getZ() - 1);
+			var scalar = SDFMesher.averageCorners(densities, dims, new float[fieldLength], false);
+			var vectorised = SDFMesher.averageCorners(densities, dims, new float[fieldLength], true);
+			assertArrayEquals(scalar, vectorised, 0);
+			assertArrayEquals(SDFMesher.negate(densities.clone(), densities.length, false), SDFMesher.negate(densities.clone(), densities.length, true), 0);
+		}
+	}
+
+	@Test
+	public void partlyFullBlocksShouldNotBeRoundedOff() {
+		var size = new BlockPos(2, 2, 2);
+		var densities = new float[]{0.25F, 0.25F, 0.25F, 0.25F, 0.25F, 0.25F, 0.25F, 0.25F};
+		assertEquals(-0.25F, SDFMesher.averageCorners(densities, size, new float[1], false)[0], 0);
+		assertEquals(-0.25F, SDFMesher.averageCorners(densities, size, new float[1], true)[0], 0);
+	}
+
+	/**
+	 * A summary where every brick looks like the surface passes through it, so none are skipped.
+	 */
+	private static float[] noBricks(BlockPos dims) {
+		// More than enough, there are always fewer bricks than cells
+		var bricks = new float[dims.getX() * dims.getY() * dims.getZ() * 2];
+		for (int i = 0; i < bricks.length; i += 2) {
+			bricks[i] = Float.NEGATIVE_INFINITY;
+			bricks[i + 1] = Float.POSITIVE_INFINITY;
+		}
+		return bricks;
+	}
+
+	/**
+	 * How MarchingCubes worked before its vertices were shared, each cell computes the vertices on its edges itself.
+	 */
+	private static IndexedMesh generateMarchingCubesWithoutSharedEdges(float[] data, BlockPos dims, float offset) {
+		var mesh = new IndexedMesh();
+		var cubeVerts = MarchingCubes.Lookup.CUBE_VERTS;
+		var edgeIndex = MarchingCubes.Lookup.EDGE_INDEX;
+		var grid = new float[8];
+		var edges = new int[12];
+		for (int z = 0; z < dims.getZ() - 1; ++z) {
+			for (int y = 0; y < dims.getY() - 1; ++y) {
+				for (int x = 0; x < dims.getX() - 1; ++x) {
+					int cubeIndex = 0;
+					for (int i = 0; i < 8; ++i) {
+						var v = cubeVerts[i];
+						grid[i] = data[x + v[0] + dims.getX() * (y + v[1] + dims.getY() * (z + v[2]))];
+						cubeIndex |= grid[i] > 0 ? 1 << i : 0;
+					}
+					int edgeMask = MarchingCubes.Lookup.EDGE_TABLE[cubeIndex];
+					if (edgeMask == 0)
+						continue;
+					for (int i = 0; i < 12; ++i) {
+						if ((edgeMask & (1 << i)) == 0)
+							continue;
+						var e = edgeIndex[i];
+						var p0 = cubeVerts[e[0]];
+						var p1 = cubeVerts[e[1]];
+						var a = grid[e[0]];
+						var d = a - grid[e[1]];
+						float t = Math.abs(d) > 1e-6 ? a / d : 0;
+						edges[i] = mesh.addVertex(
+							x + p0[0] + t * (p1[0] - p0[0]) + offset,
+							y + p0[1] + t * (p1[1] - p0[1]) + offset,
+							z + p0[2] + t * (p1[2] - p0[2]) + offset
+						);
+					}
+					var f = MarchingCubes.Lookup.TRI_TABLE[cubeIndex];
+					for (int i = 0; i < f.length; i += 3)
+						mesh.addQuad(x, y, z, edges[f[i]], edges[f[i + 1]], edges[f[i + 2]], edges[f[i + 2]]);
+				}
+			}
+		}
+		return mesh;
+	}
+
+	/**
+	 * The quads need to be in the same order and their corners need to be in the same places, the vertices can be
+	 * numbered differently.
+	 */
+	private static void assertSameQuads(IndexedMesh expected, IndexedMesh actual) {
+		assertTrue("Test meshes should have a surface", expected.quadCount > 0);
+		assertEquals(expected.quadCount, actual.quadCount);
+		var expectedPos = new MutableBlockPos();
+		var actualPos = new MutableBlockPos();
+		var expectedVertex = new Vec();
+		var actualVertex = new Vec();
+		for (int quad = 0; quad < expected.quadCount; ++quad) {
+			assertEquals(expected.getQuadPosition(quad, expectedPos), actual.getQuadPosition(quad, actualPos));
+			for (int corner = 0; corner < 4; ++corner) {
+				expected.getVertex(expected.quads[quad * 4 + corner], expectedVertex);
+				actual.getVertex(actual.quads[quad * 4 + corner], actualVertex);
+				// Shared vertices may have been interpolated from the other end of their edge
+				var message = "Quad " + quad + " corner " + corner;
+				assertEquals(message, expectedVertex.x, actualVertex.x, 1e-4F);
+				assertEquals(message, expectedVertex.y, actualVertex.y, 1e-4F);
+				assertEquals(message, expectedVertex.z, actualVertex.z, 1e-4F);
+			}
+		}
+	}
+
+}
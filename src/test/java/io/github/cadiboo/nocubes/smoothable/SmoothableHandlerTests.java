@@ -6,6 +6,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -25,6 +26,20 @@ public class SmoothableHandlerTests {
 		assertFalse(handler.isSmoothable(state));
 	}
 
+	@Test
+	public void changingManyStatesShouldOnlyChangeTheDensityVersionOnce() {
+		var handler = SmoothableHandler.create();
+		var states = new BlockStateBase[]{createStubbedStateForAsm(), createStubbedStateForAsm(), createStubbedStateForAsm()};
+		var version = DensityTable.getVersion();
+		handler.setSmoothableWithoutDensity(true, states[0]);
+		assertTrue(handler.isSmoothable(states[0]));
+		assertEquals(version, DensityTable.getVersion());
+		handler.setSmoothable(true, states);
+		for (var state : states)
+			assertTrue(handler.isSmoothable(state));
+		assertEquals(version + 1, DensityTable.getVersion());
+	}
+
 	private BlockStateBase createStubbedStateForAsm() {
 		boolean[] smoothableRef = {false};
 		var mockedState = Mockito.mock(BlockStateBase.class, Mockito.withSettings().extraInterfaces(INoCubesBlockState.class));
@@ -0,0 +1,73 @@
+package io.github.cadiboo.nocubes.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+
+import javax.annotation.Nullable;
+import java.util.function.Predicate;
+
+/**
+ * An area of a world made of densities instead of blocks, so that meshers can be tested without any block states.
+ * The densities of the world are usually from {@link io.github.cadiboo.nocubes.mesh.TestData}, anything outside it is air.
+ */
+public class DensityArea extends Area {
+
+	private final float[] worldDensities;
+	private final BlockPos worldSize;
+
+	/**
+	 * @param worldDensities The density of each block in the world, indexed [z][y][x]
+	 */
+	public DensityArea(float[] worldDensities, BlockPos worldSize, BlockPos start, BlockPos size) {
+		super(null, start, size);
+		this.worldDensities = worldDensities;
+		this.worldSize = worldSize;
+	}
+
+	/**
+	 * Clamps the distance field of a test mesh to the range that densities are in.
+	 */
+	public static float[] toDensities(float[] distanceField) {
+		var densities = new float[distanceField.length];
+		for (int i = 0; i < densities.length; ++i)
+			densities[i] = Math.max(-1, Math.min(1, distanceField[i]));
+		return densities;
+	}
+
+	@Override
+	public float[] getDensities(Predicate<BlockState> isSmoothable, float[] toUse) {
+		int index = 0;
+		for (int z = 0; z < size.getZ(); ++z)
+			for (int y = 0; y < size.getY(); ++y)
+				for (int x = 0; x < size.getX(); ++x)
+					toUse[index++] = getDensity(start.getX() + x, start.getY() + y, start.getZ() + z);
+		return toUse;
+	}
+
+	private float getDensity(int x, int y, int z) {
+		if (x < 0 || y < 0 || z < 0 || x >= worldSize.getX() || y >= worldSize.getY() || z >= worldSize.getZ())
+			return ModUtil.NOT_SMOOTHABLE;
+		return worldDensities[ModUtil.get3dIndexInto1dArray(x, y, z, worldSize.getX(), worldSize.getY())];
+	}
+
+	@Override
+	public @Nullable BlockState getUniformState() {
+		return null;
+	}
+
+	@Override
+	public BlockState[] getAndCacheBlocks() {
+		return new BlockState[numBlocks()];
+	}
+
+	@Override
+	public DensityArea copyOfZRange(int relativeStartZ, int sizeZ) {
+		return new DensityArea(worldDensities, worldSize, start.offset(0, 0, relativeStartZ), new BlockPos(size.getX(), size.getY(), sizeZ));
+	}
+
+	@Override
+	public DensityArea copyOfRange(BlockPos relativeStart, BlockPos size) {
+		return new DensityArea(worldDensities, worldSize, start.offset(relativeStart), size);
+	}
+
+}
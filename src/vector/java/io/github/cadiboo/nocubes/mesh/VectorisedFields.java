@@ -0,0 +1,84 @@
+package io.github.cadiboo.nocubes.mesh;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Versions of the loops in {@link SDFMesher} that use the Vector API to work on multiple values at once.
+ * Only loaded if {@link SDFMesher#VECTORISED} is true, because the classes it uses don't exist otherwise.
+ * Produces exactly the same results as the scalar versions.
+ * Lives in its own source set (compiled with the incubator module) and doesn't use any of Minecraft's classes.
+ */
+final class VectorisedFields {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	/**
+	 * @return If the vectors are actually accelerated by SIMD instructions on this CPU (otherwise they are slower than scalar code)
+	 */
+	static boolean isSupported() {
+		return SPECIES.length() > 1;
+	}
+
+	/**
+	 * See {@link SDFMesher#averageCorners}.
+	 * Each row of the distance field is worked out from the 4 rows of densities around it, several corners at a time.
+	 */
+	static float[] averageCorners(float[] densities, int areaX, int areaY, int areaZ, float[] distanceField) {
+		int fieldX = areaX - 1;
+		int fieldY = areaY - 1;
+		int fieldZ = areaZ - 1;
+		int slice = areaX * areaY;
+		var species = SPECIES;
+		int upperBound = species.loopBound(fieldX);
+		for (int z = 0; z < fieldZ; ++z) {
+			for (int y = 0; y < fieldY; ++y) {
+				int row = z * slice + y * areaX;
+				int fieldRow = (z * fieldY + y) * fieldX;
+				int x = 0;
+				for (; x < upperBound; x += species.length()) {
+					int index = row + x;
+					// Same order as the scalar version so that the rounding is the same
+					var sum = FloatVector.fromArray(species, densities, index)
+						.add(FloatVector.fromArray(species, densities, index + 1))
+						.add(FloatVector.fromArray(species, densities, index + areaX))
+						.add(FloatVector.fromArray(species, densities, index + areaX + 1))
+						.add(FloatVector.fromArray(species, densities, index + slice))
+						.add(FloatVector.fromArray(species, densities, index + slice + 1))
+						.add(FloatVector.fromArray(species, densities, index + slice + areaX))
+						.add(FloatVector.fromArray(species, densities, index + slice + areaX + 1));
+					sum.neg().div(8F).intoArray(distanceField, fieldRow + x);
+				}
+				for (; x < fieldX; ++x) {
+					int index = row + x;
+					var combinedDensity = 0F;
+					combinedDensity += densities[index];
+					combinedDensity += densities[index + 1];
+					combinedDensity += densities[index + areaX];
+					combinedDensity += densities[index + areaX + 1];
+					combinedDensity += densities[index + slice];
+					combinedDensity += densities[index + slice + 1];
+					combinedDensity += densities[index + slice + areaX];
+					combinedDensity += densities[index + slice + areaX + 1];
+					distanceField[fieldRow + x] = -combinedDensity / 8F;
+				}
+			}
+		}
+		return distanceField;
+	}
+
+	/**
+	 * See {@link SDFMesher#negate}.
+	 */
+	static float[] negate(float[] values, int length) {
+		var species = SPECIES;
+		int upperBound = species.loopBound(length);
+		int i = 0;
+		for (; i < upperBound; i += species.length())
+			FloatVector.fromArray(species, values, i).neg().intoArray(values, i);
+		for (; i < length; ++i)
+			values[i] = -values[i];
+		return values;
+	}
+
+}